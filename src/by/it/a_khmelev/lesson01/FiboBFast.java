@@ -0,0 +1,134 @@
+package by.it.a_khmelev.lesson01;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/*
+ * Вычисление F(n) без ограничений на размер результата для n порядка десятков миллионов.
+ *
+ * Быстрое удвоение без рекурсии (стек не растет):
+ *      F(2k)   = F(k) * (2F(k+1) - F(k))
+ *      F(2k+1) = F(k)^2 + F(k+1)^2
+ * На каждом шаге одно умножение и два возведения в квадрат, для больших чисел
+ * все три выполняются параллельно в ForkJoinPool.
+ *
+ * Вывод десятичных цифр сделан рекурсивным делением на 10^(9*2^k)
+ * (делится пополам число цифр, а не отщепляется по одной),
+ * цифры пишутся сразу в Appendable, без сборки одной огромной строки.
+ */
+
+public class FiboBFast {
+
+    //с какого размера (в битах) умножения выполняются параллельно
+    static final int PARALLEL_BITS = 1 << 15;
+    //сколько цифр в листе рекурсии вывода (BigInteger.toString на малых числах)
+    private static final int LEAF_DIGITS = 9;
+
+    private long startTime = System.currentTimeMillis();
+
+    private long time() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    public static void main(String[] args) throws IOException {
+        FiboBFast fibo = new FiboBFast();
+        int n = 10_000_000;
+        BigInteger f = fibo.fastB(n);
+        System.out.printf("fastB(%d) bits=%d \n\t time=%d \n\n", n, f.bitLength(), fibo.time());
+
+        fibo = new FiboBFast();
+        PrintWriter out = new PrintWriter(System.out);
+        writeDecimal(fibo.fastB(55555), out);
+        out.flush();
+        System.out.printf("\n\t time=%d \n\n", fibo.time());
+    }
+
+    BigInteger fastB(Integer n) {
+        return pair(n)[0];
+    }
+
+    //пара (F(n), F(n+1))
+    static BigInteger[] pair(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n=" + n);
+        BigInteger a = BigInteger.ZERO; //F(k)
+        BigInteger b = BigInteger.ONE;  //F(k+1)
+        for (int bit = 31 - Integer.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            BigInteger t = b.shiftLeft(1).subtract(a);
+            BigInteger c;
+            BigInteger d;
+            if (b.bitLength() < PARALLEL_BITS) {
+                c = a.multiply(t);
+                d = a.multiply(a).add(b.multiply(b));
+            } else {
+                final BigInteger fa = a;
+                final BigInteger fb = b;
+                ForkJoinTask<BigInteger> aa = ForkJoinTask.adapt(() -> fa.multiply(fa)).fork();
+                ForkJoinTask<BigInteger> bb = ForkJoinTask.adapt(() -> fb.multiply(fb)).fork();
+                c = a.multiply(t);
+                d = aa.join().add(bb.join());
+            }
+            if (((n >>> bit) & 1) == 0) {
+                a = c;
+                b = d;
+            } else {
+                a = d;
+                b = c.add(d);
+            }
+        }
+        return new BigInteger[]{a, b};
+    }
+
+    //десятичная запись value в out (рекурсивное деление пополам по числу цифр)
+    static void writeDecimal(BigInteger value, Appendable out) throws IOException {
+        if (value.signum() < 0) {
+            out.append('-');
+            value = value.negate();
+        }
+        //powers[k] = 10^(LEAF_DIGITS * 2^k), пока квадрат степени не превысит value
+        List<BigInteger> powers = new ArrayList<>();
+        BigInteger power = BigInteger.TEN.pow(LEAF_DIGITS);
+        while (power.bitLength() <= value.bitLength() / 2 + 1) {
+            powers.add(power);
+            power = power.multiply(power);
+        }
+        powers.add(power);
+        write(value, out, powers, powers.size() - 1, false);
+    }
+
+    static String toDecimal(BigInteger value) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeDecimal(value, sb);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); //StringBuilder не бросает IOException
+        }
+        return sb.toString();
+    }
+
+    //x < powers[level]^2; при pad=true выводится ровно LEAF_DIGITS*2^(level+1) цифр с ведущими нулями
+    private static void write(BigInteger x, Appendable out, List<BigInteger> powers, int level, boolean pad)
+            throws IOException {
+        if (level < 0) {
+            String s = x.toString();
+            if (pad) {
+                for (int i = s.length(); i < LEAF_DIGITS; i++) {
+                    out.append('0');
+                }
+            }
+            out.append(s);
+            return;
+        }
+        BigInteger[] qr = x.divideAndRemainder(powers.get(level));
+        if (!pad && qr[0].signum() == 0) {
+            write(qr[1], out, powers, level - 1, false);
+        } else {
+            write(qr[0], out, powers, level - 1, pad);
+            write(qr[1], out, powers, level - 1, true);
+        }
+    }
+}
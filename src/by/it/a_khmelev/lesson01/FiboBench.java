@@ -0,0 +1,147 @@
+package by.it.a_khmelev.lesson01;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/*
+ * Замеры вариантов вычисления чисел Фибоначчи (calc, slowA, fastB, fasterC и быстрые версии).
+ *
+ * Один вызов с System.currentTimeMillis() в main показывает в основном
+ * разогрев JIT. Здесь каждый случай сначала прогревается заданное время,
+ * затем измеряется несколькими итерациями. Для каждого случая выводятся
+ * пропускная способность (ops/s), среднее время (us/op) и объем выделенной
+ * памяти (B/op и MB/s) по счетчику потока из com.sun.management.ThreadMXBean.
+ *
+ * Параметры (системные свойства):
+ *      -Dbench.warmup=1000      прогрев каждого случая, мс
+ *      -Dbench.iterations=5     число измерительных итераций
+ *      -Dbench.time=1000        длительность одной итерации, мс
+ *      -Dbench.filter=fasterC   запускать только случаи, имя которых содержит строку
+ */
+
+public class FiboBench {
+
+    private static final long WARMUP = Long.getLong("bench.warmup", 1000);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+    private static final long TIME = Long.getLong("bench.time", 1000);
+    private static final String FILTER = System.getProperty("bench.filter", "");
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    //сюда складываются результаты, чтобы JIT не выбросил вычисления
+    static volatile long sink;
+
+    //один замеряемый случай: имя, параметры и сам вызов
+    static class Case {
+        final String name;
+        final String params;
+        final LongSupplier body;
+
+        Case(String name, String params, LongSupplier body) {
+            this.name = name;
+            this.params = params;
+            this.body = body;
+        }
+    }
+
+    //итог замера одного случая
+    static class Result {
+        final Case bench;
+        final double opsPerSecond;
+        final double microsPerOp;
+        final double bytesPerOp;
+        final double allocMBPerSecond;
+
+        Result(Case bench, long ops, long nanos, long bytes) {
+            this.bench = bench;
+            this.opsPerSecond = ops * 1e9 / nanos;
+            this.microsPerOp = nanos / 1e3 / ops;
+            this.bytesPerOp = (double) bytes / ops;
+            this.allocMBPerSecond = bytes / 1048576.0 / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-16s %-30s %14.1f %14.3f %14.1f %12.1f",
+                    bench.name, bench.params, opsPerSecond, microsPerOp, bytesPerOp, allocMBPerSecond);
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.printf("%-16s %-30s %14s %14s %14s %12s\n",
+                "benchmark", "params", "ops/s", "us/op", "B/op", "alloc MB/s");
+        for (Case c : cases()) {
+            if (c.name.contains(FILTER) || c.params.contains(FILTER)) {
+                System.out.println(measure(c, WARMUP, ITERATIONS, TIME));
+            }
+        }
+    }
+
+    static List<Case> cases() {
+        List<Case> cases = new ArrayList<>();
+        FiboA a = new FiboA();
+        FiboB b = new FiboB();
+        FiboC c = new FiboC();
+        FiboBFast bFast = new FiboBFast();
+        FiboCBatch cBatch = new FiboCBatch();
+        FiboCHuge cHuge = new FiboCHuge();
+        for (int n : new int[]{15, 20, 25}) {
+            cases.add(new Case("calc", "n=" + n, () -> a.calc(n)));
+            cases.add(new Case("slowA", "n=" + n, () -> a.slowA(n).hashCode()));
+        }
+        for (int n : new int[]{1000, 10000, 55555}) {
+            cases.add(new Case("fastB", "n=" + n, () -> b.fastB(n).hashCode()));
+            cases.add(new Case("fastB(doubling)", "n=" + n, () -> bFast.fastB(n).hashCode()));
+        }
+        for (long n : new long[]{999999999L, 1000000000000000000L}) {
+            for (int m : new int[]{2, 321, 100000}) {
+                String params = "n=" + n + " m=" + m;
+                cases.add(new Case("fasterC", params, () -> c.fasterC(n, m)));
+                cases.add(new Case("fasterC(cache)", params, () -> cBatch.fasterC(n, m)));
+                cases.add(new Case("fasterC(huge)", params, () -> cHuge.fasterC(n, m)));
+            }
+        }
+        return cases;
+    }
+
+    static Result measure(Case c, long warmupMillis, int iterations, long iterationMillis) {
+        run(c, warmupMillis);
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long[] r = run(c, iterationMillis);
+            ops += r[0];
+            nanos += r[1];
+            bytes += r[2];
+        }
+        return new Result(c, ops, nanos, bytes);
+    }
+
+    //выполняет случай не меньше заданного времени, возвращает {операций, нс, байт}
+    private static long[] run(Case c, long millis) {
+        long thread = Thread.currentThread().getId();
+        long deadline = millis * 1_000_000L;
+        long ops = 0;
+        long acc = 0;
+        long bytesStart = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long elapsed;
+        //время проверяется пачками, чтобы nanoTime не попадал в замер быстрых случаев
+        int batch = 1;
+        do {
+            for (int i = 0; i < batch; i++) {
+                acc += c.body.getAsLong();
+            }
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+            if (batch < 1024 && elapsed < deadline / 64) batch <<= 1;
+        } while (elapsed < deadline);
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesStart;
+        sink += acc;
+        return new long[]{ops, elapsed, bytes};
+    }
+}
@@ -0,0 +1,144 @@
+package by.it.a_khmelev.lesson01;
+
+/*
+ * Пакетный вариант задачи FiboC.
+ * Даны массивы n[i] (1<=n<=1E18) и m[i] (2<=m<=1E5),
+ * необходимо найти остатки от деления n[i]-го числа Фибоначчи на m[i].
+ *
+ * Период Пизано для каждого модуля ищется один раз и хранится в общем
+ * (для всех экземпляров и потоков) ограниченном кэше. Запросы группируются
+ * по модулю, группы считаются параллельно, а сам остаток внутри периода
+ * находится быстрым удвоением за O(log n).
+ */
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+public class FiboCBatch {
+
+    //сколько периодов держим в кэше (дальше вытесняем давно не использованные)
+    static final int CACHE_LIMIT = 1 << 16;
+
+    //кэш периодов Пизано: модуль -> период. LinkedHashMap в порядке доступа = LRU
+    private static final Map<Integer, Long> periods = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Long> eldest) {
+            return size() > CACHE_LIMIT;
+        }
+    };
+
+    private long startTime = System.currentTimeMillis();
+
+    private long time() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    public static void main(String[] args) {
+        FiboCBatch fibo = new FiboCBatch();
+        long[] n = {10, 1, 999999999, 1000000000000000000L, 999999999};
+        int[] m = {2, 2, 321, 100000, 321};
+        System.out.printf("fasterC(%s, %s)=%s \n\t time=%d \n\n",
+                Arrays.toString(n), Arrays.toString(m), Arrays.toString(fibo.fasterC(n, m)), fibo.time());
+    }
+
+    long fasterC(long n, int m) {
+        return fibMod(n % period(m), m);
+    }
+
+    long[] fasterC(long[] n, int[] m) {
+        if (n.length != m.length)
+            throw new IllegalArgumentException("n.length=" + n.length + " != m.length=" + m.length);
+        long[] result = new long[n.length];
+        if (n.length == 0)
+            return result;
+
+        //группируем запросы по модулю: сортируем пары (модуль, индекс),
+        //упакованные в один long, чтобы не создавать объектов на каждый запрос
+        long[] order = new long[n.length];
+        for (int i = 0; i < n.length; i++) {
+            order[i] = ((long) m[i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        //границы групп с одинаковым модулем
+        int[] bounds = new int[n.length + 1];
+        int groups = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == 0 || (order[i] >>> 32) != (order[i - 1] >>> 32))
+                bounds[groups++] = i;
+        }
+        bounds[groups] = order.length;
+
+        //каждая группа независима: период ищется (или берется из кэша) один раз на группу
+        IntStream.range(0, groups).parallel().forEach(g -> {
+            int mod = (int) (order[bounds[g]] >>> 32);
+            long pi = period(mod);
+            for (int j = bounds[g]; j < bounds[g + 1]; j++) {
+                int index = (int) order[j];
+                result[index] = fibMod(n[index] % pi, mod);
+            }
+        });
+        return result;
+    }
+
+    //период Пизано с кэшированием, повторный модуль обходится без перебора
+    static long period(int m) {
+        if (m < 2)
+            throw new IllegalArgumentException("m=" + m + " (ожидается m>=2)");
+        Long cached;
+        synchronized (periods) {
+            cached = periods.get(m);
+        }
+        if (cached != null)
+            return cached;
+        //поиск идет вне блокировки, чтобы разные модули считались параллельно;
+        //если два потока одновременно посчитают один модуль, результат будет одинаковым
+        long pi = scanPeriod(m);
+        synchronized (periods) {
+            periods.put(m, pi);
+        }
+        return pi;
+    }
+
+    static int cachedPeriods() {
+        synchronized (periods) {
+            return periods.size();
+        }
+    }
+
+    //период всегда начинается с 0, 1 и не превышает 6m
+    private static long scanPeriod(int m) {
+        long previous = 0;
+        long current = 1;
+        long limit = 6L * m;
+        for (long i = 1; i <= limit; i++) {
+            long next = (previous + current) % m;
+            previous = current;
+            current = next;
+            if (previous == 0 && current == 1)
+                return i;
+        }
+        throw new IllegalStateException("период Пизано для m=" + m + " не найден");
+    }
+
+    //быстрое удвоение: F(2k)=F(k)*(2F(k+1)-F(k)), F(2k+1)=F(k)^2+F(k+1)^2
+    //m<2^31, поэтому все произведения помещаются в long
+    static long fibMod(long n, int m) {
+        long a = 0; //F(k)
+        long b = 1; //F(k+1)
+        for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            long c = a * ((2 * b - a + m) % m) % m;
+            long d = (a * a + b * b) % m;
+            if (((n >>> bit) & 1) == 0) {
+                a = c;
+                b = d;
+            } else {
+                a = d;
+                b = (c + d) % m;
+            }
+        }
+        return a % m;
+    }
+}
@@ -0,0 +1,322 @@
+package by.it.a_khmelev.lesson01;
+
+/*
+ * Вариант задачи FiboC для больших модулей.
+ * Даны целые числа 0<=n<2^63 и 2<=m<2^63 (т.е. любой положительный long),
+ * необходимо найти остаток от деления n-го числа Фибоначчи на m.
+ *
+ * Перебор периода Пизано (до 6m шагов) здесь невозможен, поэтому:
+ *  - остаток считается быстрым удвоением за O(log n) прямо по модулю m,
+ *    произведения 128-битные (Math.multiplyHigh) в форме Монтгомери;
+ *  - сам период Пизано, если он нужен, считается через разложение m
+ *    на простые множители (Полларда-Брента + Миллер-Рабин):
+ *    pi(p) делит p-1 (p = +-1 mod 5) или 2(p+1) (p = +-2 mod 5),
+ *    pi(p^k) = p^(k-1)*pi(p), а pi(m) = НОК по всем p^k.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class FiboCHuge {
+
+    private long startTime = System.currentTimeMillis();
+
+    private long time() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    public static void main(String[] args) {
+        FiboCHuge fibo = new FiboCHuge();
+        long n = 1000000000000000000L;
+        long m = 999999999999999989L;
+        System.out.printf("fasterC(%d, %d)=%d \n\t time=%d \n\n", n, m, fibo.fasterC(n, m), fibo.time());
+        fibo = new FiboCHuge();
+        m = 1000000000000L;
+        System.out.printf("pisano(%d)=%d \n\t time=%d \n\n", m, fibo.pisano(m), fibo.time());
+    }
+
+    long fasterC(long n, long m) {
+        if (n < 0)
+            throw new IllegalArgumentException("n=" + n);
+        if (m < 2)
+            throw new IllegalArgumentException("m=" + m + " (ожидается m>=2)");
+        //m = 2^s * odd: четную часть считаем в арифметике по модулю 2^64 с маской,
+        //нечетную - в форме Монтгомери, затем собираем по китайской теореме об остатках
+        int s = Long.numberOfTrailingZeros(m);
+        long odd = m >>> s;
+        long mask = (1L << s) - 1;
+        long a = fibPow2(n, mask);
+        if (odd == 1)
+            return a;
+        long b = new Montgomery(odd).fib(n);
+        if (s == 0)
+            return b;
+        long t = ((a - b) * inverse(odd)) & mask;
+        return b + odd * t;
+    }
+
+    //период Пизано для m; ArithmeticException, если период не помещается в long
+    long pisano(long m) {
+        if (m < 2)
+            throw new IllegalArgumentException("m=" + m + " (ожидается m>=2)");
+        long result = 1;
+        for (Map.Entry<Long, Integer> e : factor(m).entrySet()) {
+            long p = e.getKey();
+            long pi = pisanoPrime(p);
+            for (int k = 1; k < e.getValue(); k++) {
+                pi = Math.multiplyExact(pi, p);
+            }
+            result = lcm(result, pi);
+        }
+        return result;
+    }
+
+    //период Пизано для простого p
+    static long pisanoPrime(long p) {
+        if (p == 2) return 3;
+        if (p == 5) return 20;
+        //кандидат N (беззнаковый: 2(p+1) может достигать 2^64) и его простые делители
+        Map<Long, Integer> divisors;
+        long period;
+        if (p % 5 == 1 || p % 5 == 4) {
+            divisors = factor(p - 1);
+            period = p - 1;
+        } else {
+            divisors = factor(p + 1);
+            divisors.merge(2L, 1, Integer::sum);
+            period = (p + 1) << 1;
+        }
+        //уменьшаем кандидата, пока он остается кратным периоду: F(d)=0, F(d+1)=1 (mod p)
+        Montgomery mont = new Montgomery(p);
+        for (long q : divisors.keySet()) {
+            while (Long.remainderUnsigned(period, q) == 0) {
+                long d = Long.divideUnsigned(period, q);
+                if (!mont.isPeriod(d))
+                    break;
+                period = d;
+            }
+        }
+        if (period < 0)
+            throw new ArithmeticException("период Пизано для p=" + p + " не помещается в long");
+        return period;
+    }
+
+    //F(n) mod 2^s, где mask = 2^s-1 (переполнение long работает как mod 2^64)
+    private static long fibPow2(long n, long mask) {
+        long a = 0;
+        long b = 1;
+        for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            long c = a * (2 * b - a);
+            long d = a * a + b * b;
+            if (((n >>> bit) & 1) == 0) {
+                a = c;
+                b = d;
+            } else {
+                a = d;
+                b = c + d;
+            }
+        }
+        return a & mask;
+    }
+
+    //обратный к нечетному x по модулю 2^64 (метод Ньютона, точность удваивается за шаг)
+    private static long inverse(long x) {
+        long inv = x;
+        for (int i = 0; i < 5; i++) {
+            inv *= 2 - x * inv;
+        }
+        return inv;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static long lcm(long a, long b) {
+        return Math.multiplyExact(a / gcd(a, b), b);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////
+    //разложение на простые множители: простое -> степень
+    static Map<Long, Integer> factor(long n) {
+        Map<Long, Integer> result = new TreeMap<>();
+        for (long p = 2; p < 64 && p * p <= n; p++) {
+            while (n % p == 0) {
+                result.merge(p, 1, Integer::sum);
+                n /= p;
+            }
+        }
+        List<Long> stack = new ArrayList<>();
+        if (n > 1)
+            stack.add(n);
+        while (!stack.isEmpty()) {
+            long x = stack.remove(stack.size() - 1);
+            if (isPrime(x)) {
+                result.merge(x, 1, Integer::sum);
+            } else {
+                long d = rho(x);
+                stack.add(d);
+                stack.add(x / d);
+            }
+        }
+        return result;
+    }
+
+    //детерминированный Миллер-Рабин для 64-битных нечетных чисел (малые делители уже убраны)
+    static boolean isPrime(long n) {
+        if (n < 2) return false;
+        for (long p : new long[]{2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37}) {
+            if (n % p == 0) return n == p;
+        }
+        Montgomery mont = new Montgomery(n);
+        long d = n - 1;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>>= s;
+        long one = mont.one;
+        long minusOne = mont.sub(0, one);
+        for (long a : new long[]{2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37}) {
+            long x = mont.pow(mont.to(a), d);
+            if (x == one || x == minusOne) continue;
+            boolean composite = true;
+            for (int i = 1; i < s && composite; i++) {
+                x = mont.mul(x, x);
+                if (x == minusOne) composite = false;
+            }
+            if (composite) return false;
+        }
+        return true;
+    }
+
+    //Поллард-Брент: находит нетривиальный делитель составного нечетного n
+    private static long rho(long n) {
+        Montgomery mont = new Montgomery(n);
+        for (long c = 1; ; c++) {
+            long cm = mont.to(c);
+            long y = mont.to(2);
+            long x = y;
+            long q = mont.one;
+            long g = 1;
+            long ys = y;
+            final int m = 128;
+            for (int r = 1; g == 1; r <<= 1) {
+                x = y;
+                for (int i = 0; i < r; i++) {
+                    y = mont.add(mont.mul(y, y), cm);
+                }
+                for (int k = 0; k < r && g == 1; k += m) {
+                    ys = y;
+                    for (int i = 0; i < m && i < r - k; i++) {
+                        y = mont.add(mont.mul(y, y), cm);
+                        q = mont.mul(q, Math.abs(x - y));
+                    }
+                    g = gcd(q, n);
+                }
+            }
+            if (g == n) {
+                //произведение обнулилось, повторяем по одному шагу
+                do {
+                    ys = mont.add(mont.mul(ys, ys), cm);
+                    g = gcd(Math.abs(x - ys), n);
+                } while (g == 1);
+            }
+            if (g != n)
+                return g;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////
+    //арифметика Монтгомери по нечетному модулю m<2^63, R=2^64.
+    //числа хранятся как a*R mod m, умножение - 128-битное через Math.multiplyHigh
+    static class Montgomery {
+        final long m;
+        final long inv; //m^(-1) mod 2^64
+        final long one; //R mod m
+        final long r2;  //R^2 mod m
+
+        Montgomery(long m) {
+            this.m = m;
+            this.inv = inverse(m);
+            long r = Long.remainderUnsigned(-1L, m) + 1;
+            this.one = r == m ? 0 : r;
+            long x = one;
+            for (int i = 0; i < 64; i++) {
+                x = add(x, x);
+            }
+            this.r2 = x;
+        }
+
+        //(hi:lo)/R mod m при hi<m
+        long reduce(long hi, long lo) {
+            long u = lo * inv;
+            long h = Math.multiplyHigh(u, m) + ((u >> 63) & m); //беззнаковая старшая часть u*m
+            long t = hi - h;
+            return t < 0 ? t + m : t;
+        }
+
+        long mul(long a, long b) {
+            return reduce(Math.multiplyHigh(a, b), a * b);
+        }
+
+        long add(long a, long b) {
+            long t = a - (m - b);
+            return t < 0 ? t + m : t;
+        }
+
+        long sub(long a, long b) {
+            long t = a - b;
+            return t < 0 ? t + m : t;
+        }
+
+        long to(long a) {
+            return mul(Long.remainderUnsigned(a, m), r2);
+        }
+
+        long from(long a) {
+            return reduce(0, a);
+        }
+
+        long pow(long a, long e) {
+            long result = one;
+            while (e != 0) {
+                if ((e & 1) != 0) result = mul(result, a);
+                a = mul(a, a);
+                e >>>= 1;
+            }
+            return result;
+        }
+
+        //пара (F(n), F(n+1)) в форме Монтгомери, n - беззнаковое
+        long[] fibPair(long n) {
+            long a = 0;
+            long b = one;
+            for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+                long c = mul(a, sub(add(b, b), a));
+                long d = add(mul(a, a), mul(b, b));
+                if (((n >>> bit) & 1) == 0) {
+                    a = c;
+                    b = d;
+                } else {
+                    a = d;
+                    b = add(c, d);
+                }
+            }
+            return new long[]{a, b};
+        }
+
+        long fib(long n) {
+            return from(fibPair(n)[0]);
+        }
+
+        boolean isPeriod(long d) {
+            long[] f = fibPair(d);
+            return f[0] == 0 && f[1] == one;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package by.it.a_khmelev.lesson01;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Общее на весь процесс хранилище контрольных точек для чисел Фибоначчи
+ * (замена пересчета с F(0) на каждом вызове slowA/fastB).
+ *
+ * Хранятся пары (F(k), F(k+1)) для k, кратных шагу K. Для F(n) берется
+ * ближайшая точка k<=n и делается не более K-1 сложений. Если такой точки
+ * нет (или она слишком далеко), нужная точка строится быстрым удвоением
+ * за O(log n) умножений и запоминается.
+ *
+ * Объем хранилища ограничен бюджетом в байтах, при превышении вытесняются
+ * давно не использованные точки (LRU). Счетчики попаданий и промахов
+ * помогают подобрать K под реальный поток запросов.
+ */
+
+public class FiboCheckpoints {
+
+    //значения по умолчанию для общего экземпляра
+    static final int DEFAULT_STEP = 1024;
+    static final long DEFAULT_BUDGET = 64L << 20;
+
+    private static final FiboCheckpoints shared = new FiboCheckpoints(DEFAULT_STEP, DEFAULT_BUDGET);
+
+    //накладные расходы на одну точку (два BigInteger, массивы, узлы двух карт)
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final int step;
+    private final long budget;
+
+    //точки по индексу (для поиска ближайшей снизу) и те же точки в порядке доступа (для LRU)
+    private final TreeMap<Integer, BigInteger[]> byIndex = new TreeMap<>();
+    private final LinkedHashMap<Integer, BigInteger[]> byAccess = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    FiboCheckpoints(int step, long budget) {
+        if (step < 1)
+            throw new IllegalArgumentException("step=" + step);
+        this.step = step;
+        this.budget = budget;
+    }
+
+    static FiboCheckpoints shared() {
+        return shared;
+    }
+
+    public static void main(String[] args) {
+        FiboCheckpoints cache = shared();
+        long startTime = System.currentTimeMillis();
+        for (int n = 55555; n < 56555; n++) {
+            cache.get(n);
+        }
+        System.out.printf("get(55555..56554) hits=%d misses=%d points=%d bytes=%d \n\t time=%d \n\n",
+                cache.hits(), cache.misses(), cache.size(), cache.bytes(), System.currentTimeMillis() - startTime);
+    }
+
+    BigInteger get(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n=" + n);
+        int k = n - n % step;
+        BigInteger[] point;
+        synchronized (this) {
+            //n < K: неявная точка (F(0), F(1)) есть всегда - это попадание
+            point = k == 0 ? new BigInteger[]{BigInteger.ZERO, BigInteger.ONE} : byAccess.get(k);
+            if (point != null) {
+                hits++;
+            } else {
+                misses++;
+                Map.Entry<Integer, BigInteger[]> floor = byIndex.floorEntry(k);
+                if (floor != null) {
+                    //ближайшая точка снизу тоже считается использованной
+                    byAccess.get(floor.getKey());
+                }
+                point = floor == null ? null : floor.getValue();
+                if (point == null || k - floor.getKey() > 2 * step) {
+                    point = null;
+                } else {
+                    k = floor.getKey();
+                }
+            }
+        }
+        if (point == null) {
+            //точки нет: строим ее удвоением и запоминаем
+            point = FiboBFast.pair(k);
+            store(k, point);
+        }
+        //от точки до n - не больше K-1 сложений (при дальней точке снизу - до 3K)
+        BigInteger a = point[0];
+        BigInteger b = point[1];
+        for (int i = k; i < n; i++) {
+            BigInteger t = a.add(b);
+            a = b;
+            b = t;
+            if ((i + 1) % step == 0) {
+                store(i + 1, new BigInteger[]{a, b});
+            }
+        }
+        return a;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized int size() {
+        return byIndex.size();
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    synchronized void clear() {
+        byIndex.clear();
+        byAccess.clear();
+        bytes = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    private synchronized void store(int k, BigInteger[] point) {
+        if (k == 0 || byIndex.containsKey(k))
+            return; //F(0), F(1) не храним - это бесплатная точка
+        long size = sizeOf(point);
+        if (size > budget)
+            return;
+        byIndex.put(k, point);
+        byAccess.put(k, point);
+        bytes += size;
+        Iterator<Map.Entry<Integer, BigInteger[]>> it = byAccess.entrySet().iterator();
+        while (bytes > budget && it.hasNext()) {
+            Map.Entry<Integer, BigInteger[]> eldest = it.next();
+            if (eldest.getKey() == k)
+                continue;
+            it.remove();
+            byIndex.remove(eldest.getKey());
+            bytes -= sizeOf(eldest.getValue());
+        }
+    }
+
+    private static long sizeOf(BigInteger[] point) {
+        return ENTRY_OVERHEAD + (point[0].bitLength() + point[1].bitLength()) / 8;
+    }
+}
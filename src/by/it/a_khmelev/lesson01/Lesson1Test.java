@@ -3,6 +3,7 @@ package by.it.a_khmelev.lesson01;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 
 import static org.junit.Assert.assertTrue;
 
@@ -41,4 +42,77 @@ public class Lesson1Test {
         assertTrue("fasterC failed 2", fibo.fasterC(1,2)==1L);
         assertTrue("fasterC failed 3", fibo.fasterC(999999999,321)==34L);
     }
+
+    @Test(timeout = 2000)
+    public void fasterCBatch() throws Exception {
+        FiboCBatch fibo=new FiboCBatch();
+        long[] res=fibo.fasterC(new long[]{10,1,999999999,999999999,10}, new int[]{2,2,321,321,2});
+        assertTrue("fasterCBatch failed 1", Arrays.equals(res,new long[]{1,1,34,34,1}));
+        for (int m = 2; m < 50; m++) {
+            long a=0, b=1;
+            for (int n = 0; n < 300; n++) {
+                assertTrue("fasterCBatch failed n="+n+" m="+m, fibo.fasterC(n,m)==a);
+                long t=(a+b)%m; a=b; b=t;
+            }
+        }
+    }
+
+    @Test(timeout = 2000)
+    public void fasterCHuge() throws Exception {
+        FiboCHuge fibo=new FiboCHuge();
+        assertTrue("fasterCHuge failed 1", fibo.fasterC(999999999,321)==34L);
+        assertTrue("fasterCHuge failed 2", fibo.pisano(10)==60L && fibo.pisano(1000000000000L)==1500000000000L);
+        assertTrue("fasterCHuge failed 3", fibo.fasterC(1000000000000000000L,1000000000000000000L)==183788299560546875L);
+        assertTrue("fasterCHuge failed 4", fibo.fasterC(Long.MAX_VALUE,Long.MAX_VALUE)==1806266682217653944L);
+        assertTrue("fasterCHuge failed 5", fibo.fasterC(123456789123456789L,3298534883328L)==1989261427394L);
+        for (int m = 2; m < 500; m++) {
+            assertTrue("fasterCHuge failed pisano m="+m, fibo.pisano(m)==FiboCBatch.period(m));
+        }
+        long[] mods={999999999999999989L, 1000000000000000000L, 1L<<62, Long.MAX_VALUE, 600851475143L*4099};
+        for (long m : mods) {
+            BigInteger mod=BigInteger.valueOf(m), a=BigInteger.ZERO, b=BigInteger.ONE;
+            for (int n = 0; n < 200; n++) {
+                assertTrue("fasterCHuge failed n="+n+" m="+m, fibo.fasterC(n,m)==a.longValue());
+                BigInteger t=a.add(b).mod(mod); a=b; b=t;
+            }
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void fastBFast() throws Exception {
+        FiboBFast fibo=new FiboBFast();
+        BigInteger a=BigInteger.ZERO, b=BigInteger.ONE;
+        for (int n = 0; n < 1000; n++) {
+            assertTrue("fastBFast failed n="+n, fibo.fastB(n).equals(a));
+            assertTrue("fastBFast toDecimal failed n="+n, FiboBFast.toDecimal(a).equals(a.toString()));
+            BigInteger t=a.add(b); a=b; b=t;
+        }
+        BigInteger res=fibo.fastB(300000);
+        boolean ok=FiboBFast.toDecimal(res).equals(res.toString())
+                && res.equals(new FiboBFast().fastB(300001).subtract(new FiboBFast().fastB(299999)));
+        assertTrue("fastBFast failed big", ok);
+        assertTrue("fastBFast failed negative", FiboBFast.toDecimal(res.negate()).equals(res.negate().toString()));
+    }
+
+    @Test(timeout = 2000)
+    public void checkpoints() throws Exception {
+        FiboCheckpoints cache=new FiboCheckpoints(64, 1L<<20);
+        BigInteger a=BigInteger.ZERO, b=BigInteger.ONE;
+        for (int n = 0; n < 3000; n++) {
+            assertTrue("checkpoints failed n="+n, cache.get(n).equals(a));
+            BigInteger t=a.add(b); a=b; b=t;
+        }
+        assertTrue("checkpoints failed counters", cache.hits()>cache.misses() && cache.size()>0);
+        boolean ok=cache.get(55555).equals(new FiboBFast().fastB(55555))
+                && cache.get(55554).equals(new FiboBFast().fastB(55554));
+        assertTrue("checkpoints failed far", ok);
+        FiboCheckpoints fresh=new FiboCheckpoints(64, 1L<<20);
+        fresh.get(5);
+        assertTrue("checkpoints failed below step", fresh.hits()==1 && fresh.misses()==0);
+        FiboCheckpoints small=new FiboCheckpoints(16, 2000);
+        for (int n = 0; n < 2000; n += 7) {
+            small.get(n);
+        }
+        assertTrue("checkpoints failed budget", small.bytes()<=2000);
+    }
 }
@@ -0,0 +1,258 @@
+package by.it.a_khmelev.lesson02;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+/*
+Потоковый вариант задачи A_VideoRegistrator для очень больших потоков событий.
+
+События читаются из файла или InputStream (числа через пробелы/переводы строк)
+кусками фиксированного размера. Каждый кусок сортируется в памяти и
+сбрасывается во временный файл (серия). Затем серии сливаются (k-way merge),
+и жадный алгоритм применяется прямо к сливаемому потоку: моменты старта
+отдаются в DoubleConsumer, без List<Double>.
+
+Память не зависит от объема входа: один кусок на этапе чтения и не более
+fanIn буферов на этапе слияния (если серий больше, они сливаются в несколько проходов).
+*/
+
+public class A_VideoRegistratorStream {
+
+    //размер куска (в событиях), сортируемого в памяти: 8 МБ
+    static final int CHUNK = 1 << 20;
+    //сколько серий сливается за один проход
+    static final int FAN_IN = 64;
+    //буфер чтения одной серии при слиянии
+    private static final int RUN_BUFFER = 1 << 16;
+
+    private final int chunk;
+    private final int fanIn;
+
+    A_VideoRegistratorStream() {
+        this(CHUNK, FAN_IN);
+    }
+
+    A_VideoRegistratorStream(int chunk, int fanIn) {
+        if (chunk < 1 || fanIn < 2)
+            throw new IllegalArgumentException("chunk=" + chunk + " fanIn=" + fanIn);
+        this.chunk = chunk;
+        this.fanIn = fanIn;
+    }
+
+    public static void main(String[] args) throws IOException {
+        A_VideoRegistratorStream instance = new A_VideoRegistratorStream();
+        InputStream events = new ByteArrayInputStream("1 1.1 1.6 2.2 2.4 2.7 3.9 8.1 9.1 5.5 3.7".getBytes());
+        StringBuilder starts = new StringBuilder();
+        instance.calcStartTimes(events, 1, start -> starts.append(start).append(' '));
+        System.out.println(starts);
+    }
+
+    void calcStartTimes(File events, double workDuration, DoubleConsumer sink) throws IOException {
+        try (InputStream stream = new FileInputStream(events)) {
+            calcStartTimes(stream, workDuration, sink);
+        }
+    }
+
+    void calcStartTimes(InputStream events, double workDuration, DoubleConsumer sink) throws IOException {
+        Greedy greedy = new Greedy(workDuration, sink);
+        NumberReader reader = new NumberReader(events);
+        double[] buffer = new double[chunk];
+        List<File> runs = new ArrayList<>();
+        try {
+            //1. режем вход на отсортированные серии
+            int size;
+            while ((size = reader.read(buffer)) > 0) {
+                Arrays.sort(buffer, 0, size);
+                if (runs.isEmpty() && size < buffer.length) {
+                    //весь вход поместился в один кусок - временные файлы не нужны
+                    for (int i = 0; i < size; i++) {
+                        greedy.accept(buffer[i]);
+                    }
+                    return;
+                }
+                runs.add(writeRun(buffer, size));
+            }
+            buffer = null; //кусок больше не нужен, память уходит под буферы слияния
+
+            //2. пока серий больше fanIn, сливаем их группами в новые серии
+            while (runs.size() > fanIn) {
+                List<File> next = new ArrayList<>();
+                for (int from = 0; from < runs.size(); from += fanIn) {
+                    List<File> group = runs.subList(from, Math.min(from + fanIn, runs.size()));
+                    File merged = tempFile();
+                    try (DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(new FileOutputStream(merged), RUN_BUFFER))) {
+                        merge(group, value -> {
+                            try {
+                                out.writeDouble(value);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                    next.add(merged);
+                    delete(group);
+                }
+                runs = next;
+            }
+
+            //3. последнее слияние сразу подается в жадный алгоритм
+            merge(runs, greedy);
+        } finally {
+            delete(runs);
+        }
+    }
+
+    //жадное покрытие: старт камеры на первом непокрытом событии
+    private static class Greedy implements DoubleConsumer {
+        private final double workDuration;
+        private final DoubleConsumer sink;
+        private boolean started;
+        private double stop;
+
+        Greedy(double workDuration, DoubleConsumer sink) {
+            this.workDuration = workDuration;
+            this.sink = sink;
+        }
+
+        @Override
+        public void accept(double event) {
+            if (!started || event > stop) {
+                started = true;
+                stop = event + workDuration;
+                sink.accept(event);
+            }
+        }
+    }
+
+    private static File writeRun(double[] buffer, int size) throws IOException {
+        File run = tempFile();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(run), RUN_BUFFER))) {
+            for (int i = 0; i < size; i++) {
+                out.writeDouble(buffer[i]);
+            }
+        }
+        return run;
+    }
+
+    //слияние отсортированных серий через двоичную кучу номеров серий
+    private static void merge(List<File> runs, DoubleConsumer sink) throws IOException {
+        int k = runs.size();
+        DataInputStream[] inputs = new DataInputStream[k];
+        long[] left = new long[k];       //сколько чисел осталось в серии
+        double[] head = new double[k];   //текущее (наименьшее) число серии
+        int[] heap = new int[k];
+        int size = 0;
+        try {
+            for (int i = 0; i < k; i++) {
+                File run = runs.get(i);
+                inputs[i] = new DataInputStream(new BufferedInputStream(new FileInputStream(run), RUN_BUFFER));
+                left[i] = run.length() / Double.BYTES;
+                if (left[i] > 0) {
+                    head[i] = inputs[i].readDouble();
+                    left[i]--;
+                    heap[size] = i;
+                    siftUp(heap, head, size++);
+                }
+            }
+            while (size > 0) {
+                int top = heap[0];
+                sink.accept(head[top]);
+                if (left[top] > 0) {
+                    head[top] = inputs[top].readDouble();
+                    left[top]--;
+                } else {
+                    heap[0] = heap[--size];
+                }
+                siftDown(heap, head, 0, size);
+            }
+        } finally {
+            for (DataInputStream input : inputs) {
+                if (input != null) input.close();
+            }
+        }
+    }
+
+    private static void siftUp(int[] heap, double[] head, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (head[heap[parent]] <= head[heap[i]]) break;
+            int t = heap[parent];
+            heap[parent] = heap[i];
+            heap[i] = t;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, double[] head, int i, int size) {
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && head[heap[child + 1]] < head[heap[child]]) child++;
+            if (head[heap[i]] <= head[heap[child]]) break;
+            int t = heap[child];
+            heap[child] = heap[i];
+            heap[i] = t;
+            i = child;
+        }
+    }
+
+    //временные файлы удаляются сразу после слияния, deleteOnExit - на случай ошибки посередине
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("events", ".run");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static void delete(List<File> runs) {
+        for (File run : runs) {
+            run.delete();
+        }
+    }
+
+    //чтение чисел из текстового потока без Scanner (буфер фиксированного размера)
+    private static class NumberReader {
+        private final InputStream stream;
+        private final byte[] buffer = new byte[1 << 16];
+        private final StringBuilder token = new StringBuilder();
+        private int position;
+        private int limit;
+
+        NumberReader(InputStream stream) {
+            this.stream = stream;
+        }
+
+        //заполняет target очередными числами, возвращает их количество (0 - конец потока)
+        int read(double[] target) throws IOException {
+            int count = 0;
+            while (count < target.length) {
+                int c = next();
+                while (c >= 0 && Character.isWhitespace(c)) c = next();
+                if (c < 0) break;
+                token.setLength(0);
+                while (c >= 0 && !Character.isWhitespace(c)) {
+                    token.append((char) c);
+                    c = next();
+                }
+                target[count++] = Double.parseDouble(token.toString());
+            }
+            return count;
+        }
+
+        private int next() throws IOException {
+            if (position == limit) {
+                limit = stream.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+    }
+}
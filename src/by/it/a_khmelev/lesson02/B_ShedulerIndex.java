@@ -0,0 +1,130 @@
+package by.it.a_khmelev.lesson02;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+/*
+Индекс для многократных запросов к задаче B_Sheduler на одном наборе событий.
+
+События сортируются один раз по концу (при равенстве - по началу).
+Жадный алгоритм на этом порядке берет очередное событие, если его начало
+не раньше конца предыдущего взятого. Для каждого события i заранее
+находится следующее взятое next[i] (первое j>i с start[j]>=stop[i]),
+и по нему строится таблица двоичных подъемов jump[k][i] = next^(2^k)[i].
+
+Запрос "сколько непересекающихся событий помещается в [from, to]":
+первое событие цепочки - первое по порядку с start>=from (спуск по дереву
+отрезков максимумов начал), дальше подъемы, пока stop<=to. Итого O(log n).
+Сами события восстанавливаются по next[] за O(ответа).
+*/
+
+public class B_ShedulerIndex {
+
+    private final B_Sheduler.Event[] events; //события в порядке (stop, start)
+    private final int[] stop;
+    private final int n;
+    private final int[] tree;                //дерево отрезков: максимум start на отрезке позиций
+    private final int size;                  //число листьев дерева (степень двойки)
+    private final int[][] jump;              //jump[k][i]: 2^k шагов жадного алгоритма от i (n - нет шага)
+
+    B_ShedulerIndex(B_Sheduler.Event[] source) {
+        events = source.clone();
+        Arrays.sort(events, (a, b) -> a.stop != b.stop ? Integer.compare(a.stop, b.stop) : Integer.compare(a.start, b.start));
+        n = events.length;
+        stop = new int[n];
+        int s = 1;
+        while (s < Math.max(n, 1)) s <<= 1;
+        size = s;
+        tree = new int[2 * size];
+        Arrays.fill(tree, Integer.MIN_VALUE);
+        for (int i = 0; i < n; i++) {
+            stop[i] = events[i].stop;
+            tree[size + i] = events[i].start;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            tree[i] = Math.max(tree[2 * i], tree[2 * i + 1]);
+        }
+
+        int levels = 1;
+        while ((1 << levels) < n) levels++;
+        jump = new int[levels][n + 1];
+        for (int i = 0; i < n; i++) {
+            jump[0][i] = firstAtLeast(i + 1, stop[i]);
+        }
+        jump[0][n] = n;
+        for (int k = 1; k < levels; k++) {
+            int[] prev = jump[k - 1];
+            int[] cur = jump[k];
+            for (int i = 0; i <= n; i++) {
+                cur[i] = prev[prev[i]];
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        B_Sheduler.Event[] events = {new B_Sheduler.Event(0, 3), new B_Sheduler.Event(0, 1), new B_Sheduler.Event(1, 2),
+                new B_Sheduler.Event(3, 5), new B_Sheduler.Event(1, 3), new B_Sheduler.Event(1, 3),
+                new B_Sheduler.Event(1, 3), new B_Sheduler.Event(3, 6), new B_Sheduler.Event(2, 7),
+                new B_Sheduler.Event(2, 3), new B_Sheduler.Event(2, 7), new B_Sheduler.Event(7, 9),
+                new B_Sheduler.Event(3, 5), new B_Sheduler.Event(2, 4), new B_Sheduler.Event(2, 3),
+                new B_Sheduler.Event(3, 7), new B_Sheduler.Event(4, 5), new B_Sheduler.Event(6, 7),
+                new B_Sheduler.Event(6, 9), new B_Sheduler.Event(7, 9), new B_Sheduler.Event(8, 9),
+                new B_Sheduler.Event(4, 6), new B_Sheduler.Event(8, 10), new B_Sheduler.Event(7, 10)
+        };
+        B_ShedulerIndex index = new B_ShedulerIndex(events);
+        System.out.println(index.calcStartTimes(0, 10));
+        System.out.println(Arrays.toString(index.count(new int[]{0, 2, 5, 0}, new int[]{10, 6, 9, 3})));
+    }
+
+    //число непересекающихся событий в [from, to] (включительно)
+    int count(int from, int to) {
+        int cur = firstAtLeast(0, from);
+        if (cur == n || stop[cur] > to)
+            return 0;
+        int result = 1;
+        for (int k = jump.length - 1; k >= 0; k--) {
+            int next = jump[k][cur];
+            if (next != n && stop[next] <= to) {
+                cur = next;
+                result += 1 << k;
+            }
+        }
+        return result;
+    }
+
+    //сами события оптимального расписания в [from, to], как в B_Sheduler.calcStartTimes
+    List<B_Sheduler.Event> calcStartTimes(int from, int to) {
+        List<B_Sheduler.Event> result = new ArrayList<>();
+        for (int cur = firstAtLeast(0, from); cur != n && stop[cur] <= to; cur = jump[0][cur]) {
+            result.add(events[cur]);
+        }
+        return result;
+    }
+
+    //пакет запросов, обрабатывается параллельно (индекс только читается)
+    int[] count(int[] from, int[] to) {
+        if (from.length != to.length)
+            throw new IllegalArgumentException("from.length=" + from.length + " != to.length=" + to.length);
+        int[] result = new int[from.length];
+        IntStream.range(0, from.length).parallel().forEach(q -> result[q] = count(from[q], to[q]));
+        return result;
+    }
+
+    //первая позиция j>=left с start[j]>=value (n, если такой нет): спуск по дереву максимумов
+    private int firstAtLeast(int left, int value) {
+        if (left >= n)
+            return n;
+        return descend(1, 0, size, left, value);
+    }
+
+    private int descend(int node, int lo, int hi, int left, int value) {
+        if (hi <= left || tree[node] < value)
+            return n;
+        if (hi - lo == 1)
+            return lo < n ? lo : n;
+        int mid = (lo + hi) >>> 1;
+        int result = descend(2 * node, lo, mid, left, value);
+        return result != n ? result : descend(2 * node + 1, mid, hi, left, value);
+    }
+}
@@ -0,0 +1,254 @@
+package by.it.a_khmelev.lesson02;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+/*
+Онлайн-вариант задачи B_Sheduler: события добавляются и отменяются по одному,
+а после каждого изменения нужен текущий максимальный набор непересекающихся событий.
+
+Все события лежат в декартовом дереве (treap), упорядоченном по (stop, start, номер),
+в каждом узле хранится максимум start по поддереву. Это позволяет за O(log n) найти
+"первое событие после x, начинающееся не раньше s" - один шаг жадного алгоритма.
+
+Жадная цепочка (выбранные события) хранится отдельно. Изменение затрагивает
+цепочку только начиная с последнего выбранного события перед измененным:
+оттуда жадный алгоритм повторяется по шагам, пока не попадет в событие старой
+цепочки - дальше цепочка совпадает со старой, и пересчет прекращается.
+*/
+
+public class B_ShedulerOnline {
+
+    //узел дерева: событие, ключ и максимум start в поддереве
+    private static class Node {
+        final B_Sheduler.Event event;
+        final int start;
+        final int stop;
+        final long id;          //различает одинаковые события
+        final int priority;
+        Node left;
+        Node right;
+        int maxStart;
+
+        Node(B_Sheduler.Event event, long id, int priority) {
+            this.event = event;
+            this.start = event.start;
+            this.stop = event.stop;
+            this.id = id;
+            this.priority = priority;
+            this.maxStart = start;
+        }
+
+        void update() {
+            int m = start;
+            if (left != null && left.maxStart > m) m = left.maxStart;
+            if (right != null && right.maxStart > m) m = right.maxStart;
+            maxStart = m;
+        }
+    }
+
+    private static final Comparator<Node> ORDER = (a, b) -> {
+        if (a.stop != b.stop) return Integer.compare(a.stop, b.stop);
+        if (a.start != b.start) return Integer.compare(a.start, b.start);
+        return Long.compare(a.id, b.id);
+    };
+
+    private final Random random = new Random();
+    private final Map<B_Sheduler.Event, Node> nodes = new IdentityHashMap<>();
+    private final TreeSet<Node> chain = new TreeSet<>(ORDER);
+    private Node root;
+    private long sequence;
+
+    //добавляет событие и чинит цепочку
+    void add(B_Sheduler.Event event) {
+        if (nodes.containsKey(event))
+            throw new IllegalArgumentException("событие " + event + " уже добавлено");
+        Node node = new Node(event, sequence++, random.nextInt());
+        nodes.put(event, node);
+        root = insert(root, node);
+        repair(chain.lower(node));
+    }
+
+    //отменяет событие; если оно было выбрано - чинит цепочку
+    void remove(B_Sheduler.Event event) {
+        Node node = nodes.remove(event);
+        if (node == null)
+            throw new IllegalArgumentException("события " + event + " нет в расписании");
+        root = delete(root, node);
+        if (chain.remove(node)) {
+            repair(chain.lower(node));
+        }
+    }
+
+    //текущее оптимальное расписание
+    List<B_Sheduler.Event> calcStartTimes() {
+        List<B_Sheduler.Event> result = new ArrayList<>(chain.size());
+        for (Node node : chain) {
+            result.add(node.event);
+        }
+        return result;
+    }
+
+    int size() {
+        return chain.size();
+    }
+
+    //повтор жадного алгоритма от выбранного события from (null - с самого начала)
+    private void repair(Node from) {
+        Node cur = from;
+        int time = from == null ? Integer.MIN_VALUE : from.stop;
+        while (true) {
+            Node next = firstAfter(root, cur, time);
+            //старые выбранные события до next больше не выбираются
+            Node old = cur == null ? (chain.isEmpty() ? null : chain.first()) : chain.higher(cur);
+            while (old != null && (next == null || ORDER.compare(old, next) < 0)) {
+                chain.remove(old);
+                old = chain.higher(old);
+            }
+            if (next == null || old == next)
+                return; //цепочка дальше совпадает со старой
+            chain.add(next);
+            cur = next;
+            time = next.stop;
+        }
+    }
+
+    //первый по порядку узел после after (null - любой) с start>=time
+    private static Node firstAfter(Node t, Node after, int time) {
+        if (t == null || t.maxStart < time)
+            return null;
+        if (after != null && ORDER.compare(t, after) <= 0)
+            return firstAfter(t.right, after, time);
+        Node result = firstAfter(t.left, after, time);
+        if (result != null)
+            return result;
+        if (t.start >= time)
+            return t;
+        return firstAfter(t.right, null, time);
+    }
+
+    private static Node insert(Node t, Node node) {
+        if (t == null)
+            return node;
+        if (node.priority > t.priority) {
+            Node[] parts = split(t, node);
+            node.left = parts[0];
+            node.right = parts[1];
+            node.update();
+            return node;
+        }
+        if (ORDER.compare(node, t) < 0) {
+            t.left = insert(t.left, node);
+        } else {
+            t.right = insert(t.right, node);
+        }
+        t.update();
+        return t;
+    }
+
+    //разрез на узлы меньше key и больше key
+    private static Node[] split(Node t, Node key) {
+        if (t == null)
+            return new Node[2];
+        if (ORDER.compare(t, key) < 0) {
+            Node[] parts = split(t.right, key);
+            t.right = parts[0];
+            t.update();
+            parts[0] = t;
+            return parts;
+        } else {
+            Node[] parts = split(t.left, key);
+            t.left = parts[1];
+            t.update();
+            parts[1] = t;
+            return parts;
+        }
+    }
+
+    private static Node delete(Node t, Node node) {
+        if (t == null)
+            return null;
+        if (t == node)
+            return merge(t.left, t.right);
+        if (ORDER.compare(node, t) < 0) {
+            t.left = delete(t.left, node);
+        } else {
+            t.right = delete(t.right, node);
+        }
+        t.update();
+        return t;
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.update();
+            return a;
+        }
+        b.left = merge(a, b.left);
+        b.update();
+        return b;
+    }
+
+    //полный пересчет (сортировка + жадный проход) - для сравнения
+    static int recompute(B_Sheduler.Event[] events) {
+        B_Sheduler.Event[] sorted = events.clone();
+        Arrays.sort(sorted, (a, b) -> a.stop != b.stop ? Integer.compare(a.stop, b.stop) : Integer.compare(a.start, b.start));
+        int count = 0;
+        int time = Integer.MIN_VALUE;
+        for (B_Sheduler.Event e : sorted) {
+            if (e.start >= time) {
+                count++;
+                time = e.stop;
+            }
+        }
+        return count;
+    }
+
+    //замер: 10^6 событий, затем изменения по одному против полного пересчета
+    public static void main(String[] args) {
+        int n = 1_000_000;
+        int updates = 10_000;
+        int recomputes = 10;
+        Random random = new Random(1);
+        B_Sheduler.Event[] events = new B_Sheduler.Event[n];
+        for (int i = 0; i < n; i++) {
+            int start = random.nextInt(100_000_000);
+            events[i] = new B_Sheduler.Event(start, start + 1 + random.nextInt(1000));
+        }
+
+        B_ShedulerOnline online = new B_ShedulerOnline();
+        long startTime = System.nanoTime();
+        for (B_Sheduler.Event e : events) {
+            online.add(e);
+        }
+        System.out.printf("add %d: %d ms, выбрано %d\n", n, (System.nanoTime() - startTime) / 1_000_000, online.size());
+
+        //каждое изменение: отмена случайного события и добавление нового на его место
+        startTime = System.nanoTime();
+        for (int u = 0; u < updates; u++) {
+            int i = random.nextInt(n);
+            online.remove(events[i]);
+            int start = random.nextInt(100_000_000);
+            events[i] = new B_Sheduler.Event(start, start + 1 + random.nextInt(1000));
+            online.add(events[i]);
+        }
+        long onlineNanos = (System.nanoTime() - startTime) / updates;
+
+        startTime = System.nanoTime();
+        int full = 0;
+        for (int u = 0; u < recomputes; u++) {
+            full = recompute(events);
+        }
+        long fullNanos = (System.nanoTime() - startTime) / recomputes;
+        System.out.printf("онлайн: %d us на изменение, полный пересчет: %d us (выбрано %d и %d)\n",
+                onlineNanos / 1000, fullNanos / 1000, online.size(), full);
+    }
+}
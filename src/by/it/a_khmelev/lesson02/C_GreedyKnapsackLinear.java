@@ -0,0 +1,204 @@
+package by.it.a_khmelev.lesson02;
+/*
+Непрерывный рюкзак (задача C_GreedyKnapsack) для каталогов из десятков миллионов предметов.
+
+1) Чтение: файл отображается в память (FileChannel.map) кусками по CHUNK байт,
+   куски разбираются параллельно побайтовым парсером целых чисел, без Scanner
+   и без объектов Item. Предметы хранятся как два массива int[] cost / int[] weight.
+
+2) Решение без полной сортировки: выбор по взвешенной медиане.
+   Берется случайный опорный предмет, массив разбивается на три части
+   (удельная цена выше / равна / ниже опорной). Если более дорогие предметы
+   уже не помещаются - продолжаем только в них, иначе берем их целиком,
+   при необходимости режем равные и продолжаем в более дешевых.
+   Каждый шаг - линейный проход по текущему отрезку, в среднем O(n).
+   Удельные цены сравниваются перекрестным умножением в long (без double).
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+public class C_GreedyKnapsackLinear {
+
+    //размер куска файла, который разбирает один поток
+    static final int CHUNK = 16 << 20;
+    //запас за концом куска: число, начатое в куске, дочитывается из него
+    private static final int OVERLAP = 32;
+
+    double calc(File source) throws IOException {
+        int[] numbers = parse(source);
+        if (numbers.length < 2)
+            throw new IllegalArgumentException("в файле " + source + " нет заголовка \"n W\"");
+        int n = numbers[0];
+        int W = numbers[1];
+        if (numbers.length < 2 + 2 * n)
+            throw new IllegalArgumentException("в файле " + source + " меньше " + n + " предметов");
+        int[] cost = new int[n];
+        int[] weight = new int[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            cost[i] = numbers[2 + 2 * i];
+            weight[i] = numbers[3 + 2 * i];
+        });
+        return solve(cost, weight, n, W);
+    }
+
+    //максимальная стоимость непрерывного рюкзака вместимостью W (массивы переставляются)
+    static double solve(int[] cost, int[] weight, int n, long W) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double result = 0;
+        long capacity = W;
+        int lo = 0;
+        int hi = n;
+        while (lo < hi && capacity > 0) {
+            int p = lo + random.nextInt(hi - lo);
+            long pc = cost[p];
+            long pw = weight[p];
+            //3-разбиение: [lo, lt) дороже опорного, [lt, i) равные, [gt, hi) дешевле
+            int lt = lo;
+            int i = lo;
+            int gt = hi;
+            long highWeight = 0, highCost = 0, equalWeight = 0, equalCost = 0;
+            while (i < gt) {
+                //cost[i]/weight[i] ? pc/pw  <=>  cost[i]*pw ? pc*weight[i]
+                int cmp = Long.compare(cost[i] * pw, pc * weight[i]);
+                if (cmp > 0) {
+                    highWeight += weight[i];
+                    highCost += cost[i];
+                    swap(cost, weight, lt++, i++);
+                } else if (cmp < 0) {
+                    swap(cost, weight, i, --gt);
+                } else {
+                    equalWeight += weight[i];
+                    equalCost += cost[i];
+                    i++;
+                }
+            }
+            if (highWeight >= capacity) {
+                //ответ целиком среди более дорогих предметов
+                hi = lt;
+                continue;
+            }
+            result += highCost;
+            capacity -= highWeight;
+            if (equalWeight >= capacity) {
+                //pw>0: иначе все равные весят 0 и equalWeight=0<capacity
+                result += (double) capacity * pc / pw;
+                return result;
+            }
+            result += equalCost;
+            capacity -= equalWeight;
+            lo = gt;
+        }
+        return result;
+    }
+
+    private static void swap(int[] cost, int[] weight, int i, int j) {
+        int t = cost[i];
+        cost[i] = cost[j];
+        cost[j] = t;
+        t = weight[i];
+        weight[i] = weight[j];
+        weight[j] = t;
+    }
+
+    //все целые числа файла по порядку; куски по chunk байт разбираются параллельно
+    static int[] parse(File source) throws IOException {
+        return parse(source, CHUNK);
+    }
+
+    static int[] parse(File source, int chunk) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(source, "r");
+             FileChannel channel = file.getChannel()) {
+            long length = channel.size();
+            int chunks = (int) Math.max(1, (length + chunk - 1) / chunk);
+            IntList[] parts = new IntList[chunks];
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                try {
+                    parts[c] = parseChunk(channel, (long) c * chunk, Math.min(length, (long) (c + 1) * chunk), length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            int total = 0;
+            for (IntList part : parts) {
+                total += part.size;
+            }
+            int[] result = new int[total];
+            int offset = 0;
+            for (IntList part : parts) {
+                System.arraycopy(part.data, 0, result, offset, part.size);
+                offset += part.size;
+            }
+            return result;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    //числа, первая цифра (или знак) которых лежит в [from, to)
+    private static IntList parseChunk(FileChannel channel, long from, long to, long length) throws IOException {
+        IntList result = new IntList();
+        //захватываем байт перед куском (чтобы понять, не продолжение ли это числа) и запас после
+        long mapFrom = Math.max(0, from - 1);
+        long mapTo = Math.min(length, to + OVERLAP);
+        if (mapTo <= mapFrom)
+            return result;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapFrom, mapTo - mapFrom);
+        int end = (int) (to - mapFrom);
+        int limit = buffer.limit();
+        int i = (int) (from - mapFrom);
+        if (i > 0 && isNumberByte(buffer.get(i - 1))) {
+            //начало куска внутри числа - оно принадлежит предыдущему куску
+            while (i < limit && isNumberByte(buffer.get(i))) i++;
+        }
+        while (true) {
+            while (i < end && !isNumberByte(buffer.get(i))) i++;
+            if (i >= end)
+                break;
+            boolean negative = buffer.get(i) == '-';
+            if (negative) i++;
+            int value = 0;
+            while (i < limit) {
+                int b = buffer.get(i) - '0';
+                if (b < 0 || b > 9) break;
+                value = value * 10 + b;
+                i++;
+            }
+            result.add(negative ? -value : value);
+        }
+        return result;
+    }
+
+    private static boolean isNumberByte(byte b) {
+        return (b >= '0' && b <= '9') || b == '-';
+    }
+
+    //растущий массив int без упаковки
+    private static class IntList {
+        int[] data = new int[1024];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                int[] grown = new int[data.length * 2];
+                System.arraycopy(data, 0, grown, 0, size);
+                data = grown;
+            }
+            data[size++] = value;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long startTime = System.currentTimeMillis();
+        String root = System.getProperty("user.dir") + "/src/";
+        File f = new File(root + "by/it/a_khmelev/lesson02/greedyKnapsack.txt");
+        double costFinal = new C_GreedyKnapsackLinear().calc(f);
+        long finishTime = System.currentTimeMillis();
+        System.out.printf("Общая стоимость %f (время %d)", costFinal, finishTime - startTime);
+    }
+}
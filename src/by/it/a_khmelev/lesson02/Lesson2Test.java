@@ -2,8 +2,12 @@ package by.it.a_khmelev.lesson02;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertTrue;
 
@@ -27,6 +31,26 @@ public class Lesson2Test {
         assertTrue("slowA failed", ok);
     }
 
+    @Test
+    public void A_VideoRegistratorStream() throws Exception {
+        String events="1 1.1 1.6 2.2 2.4 2.7 3.9 8.1 9.1 5.5 3.7";
+        for (int chunk : new int[]{1000, 3, 1}) {
+            A_VideoRegistratorStream instance=new A_VideoRegistratorStream(chunk, 2);
+            List<Double> starts=new ArrayList<>();
+            instance.calcStartTimes(new ByteArrayInputStream(events.getBytes()), 1, starts::add);
+            boolean ok=starts.toString().equals("[1.0, 2.2, 3.7, 5.5, 8.1]");
+            assertTrue("A_VideoRegistratorStream failed chunk="+chunk, ok);
+        }
+        //байт >= 0x80 - ошибка разбора, а не конец потока
+        try {
+            new A_VideoRegistratorStream().calcStartTimes(
+                    new ByteArrayInputStream("1 2 \u00e9 3".getBytes("UTF-8")), 1, start -> { });
+            assertTrue("A_VideoRegistratorStream failed non-ASCII", false);
+        } catch (NumberFormatException e) {
+            //ожидаемо
+        }
+    }
+
     @Test
     public void B_Sheduler() {
         B_Sheduler instance = new B_Sheduler();
@@ -42,6 +66,73 @@ public class Lesson2Test {
         boolean ok=starts.toString().equals("[(0:1), (1:2), (2:3), (3:5), (6:7), (7:9)]");
         assertTrue("B_Sheduler failed", ok);
     }
+    @Test
+    public void B_ShedulerIndex() {
+        B_Sheduler.Event[] events = {new B_Sheduler.Event(0, 3), new B_Sheduler.Event(0, 1), new B_Sheduler.Event(1, 2), new B_Sheduler.Event(3, 5),
+                new B_Sheduler.Event(1, 3), new B_Sheduler.Event(1, 3), new B_Sheduler.Event(1, 3), new B_Sheduler.Event(3, 6),
+                new B_Sheduler.Event(2, 7), new B_Sheduler.Event(2, 3), new B_Sheduler.Event(2, 7), new B_Sheduler.Event(7, 9),
+                new B_Sheduler.Event(3, 5), new B_Sheduler.Event(2, 4), new B_Sheduler.Event(2, 3), new B_Sheduler.Event(3, 7),
+                new B_Sheduler.Event(4, 5), new B_Sheduler.Event(6, 7), new B_Sheduler.Event(6, 9), new B_Sheduler.Event(7, 9),
+                new B_Sheduler.Event(8, 9), new B_Sheduler.Event(4, 6), new B_Sheduler.Event(8, 10), new B_Sheduler.Event(7, 10)
+        };
+        B_ShedulerIndex index = new B_ShedulerIndex(events);
+        boolean ok=index.calcStartTimes(0, 10).toString().equals("[(0:1), (1:2), (2:3), (3:5), (6:7), (7:9)]");
+        assertTrue("B_ShedulerIndex failed", ok);
+
+        //сверка с жадным перебором на случайных окнах
+        Random random = new Random(7);
+        events = new B_Sheduler.Event[300];
+        for (int i = 0; i < events.length; i++) {
+            int start = random.nextInt(200);
+            events[i] = new B_Sheduler.Event(start, start + random.nextInt(15));
+        }
+        index = new B_ShedulerIndex(events);
+        B_Sheduler.Event[] sorted = events.clone();
+        Arrays.sort(sorted, (a, b) -> a.stop != b.stop ? Integer.compare(a.stop, b.stop) : Integer.compare(a.start, b.start));
+        int[] from = new int[500];
+        int[] to = new int[500];
+        for (int q = 0; q < from.length; q++) {
+            from[q] = random.nextInt(220);
+            to[q] = from[q] + random.nextInt(100);
+        }
+        int[] counts = index.count(from, to);
+        for (int q = 0; q < from.length; q++) {
+            int expected = 0;
+            int last = from[q];
+            for (B_Sheduler.Event e : sorted) {
+                if (e.start >= last && e.stop <= to[q]) {
+                    expected++;
+                    last = e.stop;
+                }
+            }
+            assertTrue("B_ShedulerIndex failed window " + q, counts[q] == expected
+                    && index.calcStartTimes(from[q], to[q]).size() == expected);
+        }
+    }
+
+    @Test
+    public void B_ShedulerOnline() {
+        Random random = new Random(5);
+        B_ShedulerOnline online = new B_ShedulerOnline();
+        List<B_Sheduler.Event> current = new ArrayList<>();
+        for (int step = 0; step < 3000; step++) {
+            if (current.isEmpty() || random.nextInt(3) > 0) {
+                int start = random.nextInt(300);
+                B_Sheduler.Event e = new B_Sheduler.Event(start, start + random.nextInt(20));
+                current.add(e);
+                online.add(e);
+            } else {
+                online.remove(current.remove(random.nextInt(current.size())));
+            }
+            List<B_Sheduler.Event> starts = online.calcStartTimes();
+            boolean ok = starts.size() == B_ShedulerOnline.recompute(current.toArray(new B_Sheduler.Event[0]));
+            for (int i = 1; i < starts.size(); i++) {
+                ok = ok && starts.get(i).start >= starts.get(i - 1).stop;
+            }
+            assertTrue("B_ShedulerOnline failed step " + step, ok);
+        }
+    }
+
     @Test
     public void C_GreedyKnapsack() throws Exception {
         String root=System.getProperty("user.dir")+"/src/";
@@ -51,4 +142,43 @@ public class Lesson2Test {
         assertTrue("B_Sheduler failed", ok);
     }
 
+    @Test
+    public void C_GreedyKnapsackLinear() throws Exception {
+        String root=System.getProperty("user.dir")+"/src/";
+        File f=new File(root+"by/it/a_khmelev/lesson02/greedyKnapsack.txt");
+        double costFinal=new C_GreedyKnapsackLinear().calc(f);
+        boolean ok=costFinal==200;
+        assertTrue("C_GreedyKnapsackLinear failed", ok);
+        for (int chunk : new int[]{1, 2, 3, 5, 7}) {
+            ok=Arrays.equals(C_GreedyKnapsackLinear.parse(f, chunk), new int[]{4, 60, 60, 20, 100, 50, 120, 30, 100, 50});
+            assertTrue("C_GreedyKnapsackLinear parse failed chunk="+chunk, ok);
+        }
+
+        //сверка с решением через полную сортировку
+        Random random = new Random(11);
+        for (int test = 0; test < 200; test++) {
+            int n = 1 + random.nextInt(50);
+            int[] cost = new int[n];
+            int[] weight = new int[n];
+            Integer[] order = new Integer[n];
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                cost[i] = random.nextInt(20);
+                weight[i] = 1 + random.nextInt(10);
+                order[i] = i;
+                total += weight[i];
+            }
+            long W = random.nextInt((int) total + 5);
+            Arrays.sort(order, (a, b) -> Long.compare((long) cost[b] * weight[a], (long) cost[a] * weight[b]));
+            double expected = 0;
+            long capacity = W;
+            for (int i : order) {
+                long take = Math.min(capacity, weight[i]);
+                expected += (double) cost[i] * take / weight[i];
+                capacity -= take;
+            }
+            double result = C_GreedyKnapsackLinear.solve(cost.clone(), weight.clone(), n, W);
+            assertTrue("C_GreedyKnapsackLinear failed test " + test, Math.abs(result - expected) < 1e-6);
+        }
+    }
 }
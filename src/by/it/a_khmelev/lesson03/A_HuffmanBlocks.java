@@ -0,0 +1,339 @@
+package by.it.a_khmelev.lesson03;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+//Lesson 3. A_Huffman для больших файлов: параллельное сжатие блоками.
+
+// A_HuffmanPacked кодирует файл одним потоком и одним битовым потоком, поэтому
+// ни сжатие, ни распаковка не распараллеливаются, а прочитать середину файла
+// можно только декодировав все до нее. Здесь вход делится на блоки по blockSize байт:
+//  1) каждый блок отображается в память и его частоты считаются параллельно,
+//     гистограммы блоков складываются в общую;
+//  2) по общей гистограмме один раз строится канонический код с длинами не больше
+//     maxLength (A_HuffmanLimited), чтобы любой блок декодировался таблицами B_HuffmanTable;
+//  3) длина каждого блока в битах известна заранее (гистограмма блока x длины кодов),
+//     поэтому смещения всех блоков в выходном файле вычисляются до кодирования,
+//     и блоки кодируются параллельно и пишутся в канал каждый на свое место.
+// Каждый блок начинается с границы слова, поэтому распаковка тоже идет
+// параллельно (B_HuffmanTable.Table, одна на все блоки), а любой блок
+// можно декодировать отдельно по индексу.
+
+// Формат файла:
+//      256 байт     длины кодов байтов 0..255
+//      4 байта      размер блока исходных данных
+//      8 байт       размер исходного файла
+//      4 байта      число блоков n
+//      n x 16 байт  индекс: смещение блока в файле, число бит в блоке
+//      ...          блоки, каждый дополнен нулями до целого числа слов по 8 байт
+
+public class A_HuffmanBlocks {
+
+    static final int BLOCK = 4 << 20;
+    static final int HEADER = A_HuffmanPacked.ALPHABET + Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY = 2 * Long.BYTES;
+
+    private final int blockSize;
+    private final int maxLength;
+
+    A_HuffmanBlocks() {
+        this(BLOCK);
+    }
+
+    A_HuffmanBlocks(int blockSize) {
+        this(blockSize, B_HuffmanTable.MAX_CODE_LENGTH);
+    }
+
+    A_HuffmanBlocks(int blockSize, int maxLength) {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("размер блока " + blockSize + " должен быть положительным");
+        if (maxLength > B_HuffmanTable.MAX_CODE_LENGTH)
+            throw new IllegalArgumentException("коды длиннее " + B_HuffmanTable.MAX_CODE_LENGTH + " бит не декодируются таблицами");
+        this.blockSize = blockSize;
+        this.maxLength = maxLength;
+    }
+
+    //заголовок и индекс сжатого файла
+    static class Index {
+        final int[] lengths;
+        final int blockSize;
+        final long size;
+        final long[] offsets;     //начало каждого блока в сжатом файле
+        final long[] bitLengths;  //число значащих бит каждого блока
+        final B_HuffmanTable.Table table;
+
+        Index(int[] lengths, int blockSize, long size, long[] offsets, long[] bitLengths) {
+            this.lengths = lengths;
+            this.blockSize = blockSize;
+            this.size = size;
+            this.offsets = offsets;
+            this.bitLengths = bitLengths;
+            this.table = offsets.length == 0 ? null : new B_HuffmanTable.Table(lengths, A_HuffmanPacked.canonicalCodes(lengths));
+        }
+
+        int blocks() {
+            return offsets.length;
+        }
+
+        //номер блока, в котором лежит байт position исходного файла
+        int block(long position) {
+            if (position < 0 || position >= size)
+                throw new IndexOutOfBoundsException("позиция " + position + " вне файла размером " + size);
+            return (int) (position / blockSize);
+        }
+
+        //сколько байт исходного файла в блоке
+        int blockLength(int block) {
+            return (int) Math.min(blockSize, size - (long) block * blockSize);
+        }
+
+        //полный размер сжатого файла
+        long compressedSize() {
+            int n = blocks();
+            return n == 0 ? HEADER : offsets[n - 1] + words(bitLengths[n - 1]) * Long.BYTES;
+        }
+
+        private ByteBuffer header() {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER + blocks() * INDEX_ENTRY);
+            for (int length : lengths) {
+                buffer.put((byte) length);
+            }
+            buffer.putInt(blockSize).putLong(size).putInt(blocks());
+            for (int b = 0; b < blocks(); b++) {
+                buffer.putLong(offsets[b]).putLong(bitLengths[b]);
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    //сжимает input в output; возвращает индекс записанного файла
+    Index encode(File input, File output) throws IOException {
+        try (FileChannel in = FileChannel.open(input.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long count = (size + blockSize - 1) / blockSize;
+            if (count > (Integer.MAX_VALUE - HEADER) / INDEX_ENTRY)
+                throw new IllegalArgumentException("файл " + input + " слишком велик для блоков по " + blockSize + " байт");
+            int blocks = (int) count;
+
+            //1) частоты по блокам
+            long[][] histograms = new long[blocks][];
+            parallel(blocks, b -> {
+                histograms[b] = new long[A_HuffmanPacked.ALPHABET];
+                A_HuffmanPacked.count(map(in, b, size), histograms[b]);
+            });
+            long[] frequencies = new long[A_HuffmanPacked.ALPHABET];
+            for (long[] histogram : histograms) {
+                for (int symbol = 0; symbol < frequencies.length; symbol++) {
+                    frequencies[symbol] += histogram[symbol];
+                }
+            }
+
+            //2) один код на весь файл
+            int[] lengths = A_HuffmanLimited.codeLengths(frequencies, maxLength);
+            long[] codes = A_HuffmanPacked.canonicalCodes(lengths);
+
+            //3) размеры и смещения блоков известны до кодирования
+            long[] offsets = new long[blocks];
+            long[] bitLengths = new long[blocks];
+            long offset = HEADER + (long) blocks * INDEX_ENTRY;
+            for (int b = 0; b < blocks; b++) {
+                bitLengths[b] = A_HuffmanPacked.cost(histograms[b], lengths);
+                offsets[b] = offset;
+                offset += words(bitLengths[b]) * Long.BYTES;
+            }
+            Index index = new Index(lengths, blockSize, size, offsets, bitLengths);
+            write(out, index.header(), 0);
+
+            parallel(blocks, b -> {
+                MappedByteBuffer data = map(in, b, size);
+                A_HuffmanPacked.BitWriter writer = new A_HuffmanPacked.BitWriter(bitLengths[b]);
+                while (data.hasRemaining()) {
+                    int symbol = data.get() & 0xFF;
+                    writer.write(codes[symbol], lengths[symbol]);
+                }
+                writer.finish();
+                ByteBuffer buffer = ByteBuffer.allocate(writer.count * Long.BYTES);
+                buffer.asLongBuffer().put(writer.words, 0, writer.count);
+                write(out, buffer, offsets[b]);
+            });
+            return index;
+        }
+    }
+
+    //распаковывает input в output, блоки декодируются параллельно
+    void decode(File input, File output) throws IOException {
+        try (FileChannel in = FileChannel.open(input.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Index index = readIndex(in);
+            parallel(index.blocks(), b -> write(out, ByteBuffer.wrap(decodeBlock(in, index, b)), (long) b * index.blockSize));
+        }
+    }
+
+    static Index readIndex(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        read(channel, header, 0);
+        int[] lengths = new int[A_HuffmanPacked.ALPHABET];
+        for (int symbol = 0; symbol < lengths.length; symbol++) {
+            lengths[symbol] = header.get() & 0xFF;
+        }
+        int blockSize = header.getInt();
+        long size = header.getLong();
+        int blocks = header.getInt();
+        if (blockSize <= 0 || size < 0 || blocks != (size + blockSize - 1) / blockSize)
+            throw new IllegalArgumentException("поврежден заголовок: блок " + blockSize + ", размер " + size + ", блоков " + blocks);
+        ByteBuffer entries = ByteBuffer.allocate(blocks * INDEX_ENTRY);
+        read(channel, entries, HEADER);
+        long[] offsets = new long[blocks];
+        long[] bitLengths = new long[blocks];
+        for (int b = 0; b < blocks; b++) {
+            offsets[b] = entries.getLong();
+            bitLengths[b] = entries.getLong();
+        }
+        return new Index(lengths, blockSize, size, offsets, bitLengths);
+    }
+
+    //один блок исходного файла, остальные блоки не читаются
+    static byte[] decodeBlock(FileChannel channel, Index index, int block) throws IOException {
+        long bitLength = index.bitLengths[block];
+        long[] bits = new long[(int) words(bitLength)];
+        ByteBuffer data = ByteBuffer.allocate(bits.length * Long.BYTES);
+        read(channel, data, index.offsets[block]);
+        data.asLongBuffer().get(bits);
+        byte[] result = index.table.decode(bits, bitLength);
+        if (result.length != index.blockLength(block))
+            throw new IllegalArgumentException("блок " + block + ": декодировано " + result.length
+                    + " байт вместо " + index.blockLength(block));
+        return result;
+    }
+
+    //length байт исходного файла начиная с from: декодируются только нужные блоки
+    static byte[] decodeRange(FileChannel channel, Index index, long from, int length) throws IOException {
+        if (length < 0 || from < 0 || from + length > index.size)
+            throw new IndexOutOfBoundsException("[" + from + ", " + (from + length) + ") вне файла размером " + index.size);
+        byte[] result = new byte[length];
+        int done = 0;
+        while (done < length) {
+            long position = from + done;
+            int block = index.block(position);
+            byte[] data = decodeBlock(channel, index, block);
+            int start = (int) (position - (long) block * index.blockSize);
+            int n = Math.min(length - done, data.length - start);
+            System.arraycopy(data, start, result, done, n);
+            done += n;
+        }
+        return result;
+    }
+
+    private static long words(long bitLength) {
+        return (bitLength + 63) >>> 6;
+    }
+
+    private MappedByteBuffer map(FileChannel channel, int block, long size) throws IOException {
+        long from = (long) block * blockSize;
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(blockSize, size - from));
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0)
+                throw new IllegalArgumentException("файл обрывается на позиции " + position);
+            position += n;
+        }
+        buffer.flip();
+    }
+
+    private interface BlockTask {
+        void run(int block) throws IOException;
+    }
+
+    //задачи по блокам в общем пуле; позиционные read/write канала потокобезопасны
+    private static void parallel(int blocks, BlockTask task) throws IOException {
+        try {
+            IntStream.range(0, blocks).parallel().forEach(b -> {
+                try {
+                    task.run(b);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    //замер на синтетическом журнале (размер в МБ можно задать аргументом)
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        File source = File.createTempFile("huffman", ".log");
+        File packed = File.createTempFile("huffman", ".packed");
+        File blocks = File.createTempFile("huffman", ".blocks");
+        File restored = File.createTempFile("huffman", ".restored");
+        try {
+            String[] levels = {"INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR"};
+            Random random = new Random(1);
+            byte[] line = new byte[0];
+            try (FileChannel out = FileChannel.open(source.toPath(), StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+                for (long written = 0; written < (long) megabytes << 20; written += line.length) {
+                    line = String.format("2024-03-%02d 12:%02d:%02d.%03d %-5s [worker-%d] request %d done in %d ms\n",
+                            1 + random.nextInt(28), random.nextInt(60), random.nextInt(60), random.nextInt(1000),
+                            levels[random.nextInt(levels.length)], random.nextInt(16),
+                            random.nextInt(1_000_000), random.nextInt(5000)).getBytes();
+                    if (buffer.remaining() < line.length) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) out.write(buffer);
+                        buffer.clear();
+                    }
+                    buffer.put(line);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) out.write(buffer);
+            }
+
+            long startTime = System.currentTimeMillis();
+            try (FileChannel out = FileChannel.open(packed.toPath(), StandardOpenOption.WRITE)) {
+                new A_HuffmanPacked().encode(source, out);
+            }
+            long sequential = System.currentTimeMillis() - startTime;
+
+            A_HuffmanBlocks instance = new A_HuffmanBlocks();
+            startTime = System.currentTimeMillis();
+            Index index = instance.encode(source, blocks);
+            long encodeTime = System.currentTimeMillis() - startTime;
+            startTime = System.currentTimeMillis();
+            instance.decode(blocks, restored);
+            long decodeTime = System.currentTimeMillis() - startTime;
+
+            System.out.printf("исходный %d МБ, сжатый %d МБ, блоков %d\n",
+                    source.length() >> 20, index.compressedSize() >> 20, index.blocks());
+            System.out.printf("A_HuffmanPacked: %d мс, блоками: сжатие %d мс, распаковка %d мс\n",
+                    sequential, encodeTime, decodeTime);
+            System.out.printf("совпадает: %b\n", Arrays.equals(Files.readAllBytes(source.toPath()), Files.readAllBytes(restored.toPath())));
+        } finally {
+            source.delete();
+            packed.delete();
+            blocks.delete();
+            restored.delete();
+        }
+    }
+}
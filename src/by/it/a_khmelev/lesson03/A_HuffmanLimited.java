@@ -0,0 +1,153 @@
+package by.it.a_khmelev.lesson03;
+
+import java.util.Arrays;
+
+//Lesson 3. A_Huffman с ограничением длины кода.
+
+// На сильно неравномерных частотах (например, частоты - числа Фибоначчи) дерево
+// Хаффмана вырождается в цепочку, и код самого редкого символа получается длиной
+// почти в размер алфавита. Такие коды не помещаются ни в слово BitWriter, ни в
+// таблицы B_HuffmanTable. Здесь строится оптимальный беспрефиксный код, все коды
+// которого не длиннее maxLength бит (алгоритм package-merge, Larmore-Hirschberg):
+//  - символы сортируются по частоте; на каждом из maxLength уровней список
+//    состоит из самих символов и "пакетов" - пар соседних элементов списка
+//    предыдущего уровня, сливаемых по весу;
+//  - из списка верхнего уровня берутся 2n-2 самых легких элемента; каждое
+//    вхождение символа в выбранные элементы (с раскрытием пакетов вниз по уровням)
+//    добавляет 1 к длине его кода.
+// Время и память O(n * maxLength), для байтового алфавита - доли миллисекунды.
+// Если обычный код Хаффмана и так не длиннее maxLength, он и возвращается.
+
+public class A_HuffmanLimited {
+
+    //сравнение с неограниченным кодом
+    static class Report {
+        final int maxLength;        //ограничение
+        final int optimalMaxLength; //самый длинный код Хаффмана без ограничения
+        final long optimalBits;     //длина текста с кодом Хаффмана
+        final long limitedBits;     //длина текста с ограниченным кодом
+
+        Report(int maxLength, int optimalMaxLength, long optimalBits, long limitedBits) {
+            this.maxLength = maxLength;
+            this.optimalMaxLength = optimalMaxLength;
+            this.optimalBits = optimalBits;
+            this.limitedBits = limitedBits;
+        }
+
+        //относительное увеличение длины текста
+        double overhead() {
+            return optimalBits == 0 ? 0 : (double) (limitedBits - optimalBits) / optimalBits;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Хаффман: %d бит (код до %d), ограничение %d: %d бит (+%.4f%%)",
+                    optimalBits, optimalMaxLength, maxLength, limitedBits, overhead() * 100);
+        }
+    }
+
+    //длины кодов не длиннее maxLength (0 для отсутствующих символов)
+    static int[] codeLengths(long[] frequencies, int maxLength) {
+        int[] lengths = A_HuffmanPacked.codeLengths(frequencies);
+        if (max(lengths) <= maxLength)
+            return lengths;
+        return packageMerge(frequencies, maxLength);
+    }
+
+    static Report report(long[] frequencies, int maxLength) {
+        int[] optimal = A_HuffmanPacked.codeLengths(frequencies);
+        int[] limited = codeLengths(frequencies, maxLength);
+        return new Report(maxLength, max(optimal),
+                A_HuffmanPacked.cost(frequencies, optimal), A_HuffmanPacked.cost(frequencies, limited));
+    }
+
+    static int[] packageMerge(long[] frequencies, int maxLength) {
+        int[] lengths = new int[frequencies.length];
+        //символы по возрастанию частоты: частота << 9 | символ
+        long[] sorted = new long[frequencies.length];
+        int n = 0;
+        for (int symbol = 0; symbol < frequencies.length; symbol++) {
+            if (frequencies[symbol] > 0) {
+                sorted[n++] = frequencies[symbol] << 9 | symbol;
+            }
+        }
+        if (n == 0)
+            return lengths;
+        if (n == 1) {
+            lengths[(int) (sorted[0] & 0x1FF)] = 1;
+            return lengths;
+        }
+        if (maxLength < 1 || maxLength < 64 - Long.numberOfLeadingZeros(n - 1))
+            throw new IllegalArgumentException(n + " символов не закодировать кодами не длиннее " + maxLength + " бит");
+        sorted = Arrays.copyOf(sorted, n);
+        Arrays.sort(sorted);
+        long[] leaf = new long[n];
+        for (int i = 0; i < n; i++) {
+            leaf[i] = sorted[i] >>> 9;
+        }
+
+        //уровень 0 - самый глубокий (только символы), уровень maxLength-1 - верхний.
+        //packages[level] - сколько пакетов среди первых i элементов списка уровня
+        int[][] packages = new int[maxLength][];
+        long[] list = leaf.clone();
+        packages[0] = new int[n + 1];
+        for (int level = 1; level < maxLength; level++) {
+            int pairs = list.length / 2;
+            long[] merged = new long[n + pairs];
+            int[] count = new int[n + pairs + 1];
+            int i = 0;
+            int p = 0;
+            for (int k = 0; k < merged.length; k++) {
+                //при равенстве первым идет символ
+                if (p == pairs || (i < n && leaf[i] <= list[2 * p] + list[2 * p + 1])) {
+                    merged[k] = leaf[i++];
+                    count[k + 1] = count[k];
+                } else {
+                    merged[k] = list[2 * p] + list[2 * p + 1];
+                    p++;
+                    count[k + 1] = count[k] + 1;
+                }
+            }
+            packages[level] = count;
+            list = merged;
+        }
+
+        //раскрытие 2n-2 элементов верхнего уровня: первые m-p из них - символы, p пакетов
+        //занимают первые 2p элементов уровня ниже
+        int m = 2 * n - 2;
+        for (int level = maxLength - 1; level >= 0; level--) {
+            int p = packages[level][m];
+            for (int i = 0; i < m - p; i++) {
+                lengths[(int) (sorted[i] & 0x1FF)]++;
+            }
+            m = 2 * p;
+        }
+        return lengths;
+    }
+
+    private static int max(int[] lengths) {
+        int max = 0;
+        for (int length : lengths) {
+            max = Math.max(max, length);
+        }
+        return max;
+    }
+
+    public static void main(String[] args) {
+        //частоты - числа Фибоначчи: код Хаффмана вырождается в цепочку
+        long[] frequencies = new long[A_HuffmanPacked.ALPHABET];
+        long a = 1, b = 1;
+        for (int symbol = 0; symbol < 60; symbol++) {
+            frequencies[symbol] = a;
+            long t = a + b;
+            a = b;
+            b = t;
+        }
+        for (int maxLength : new int[]{6, 8, 12, 16, 28, 32, 64}) {
+            long startTime = System.nanoTime();
+            Report report = report(frequencies, maxLength);
+            long finishTime = System.nanoTime();
+            System.out.printf("%s, время %d мкс\n", report, (finishTime - startTime) / 1000);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package by.it.a_khmelev.lesson03;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+//Lesson 3. A_Huffman, упакованный вариант.
+//Кодирование Хаффмана для произвольных байтов с выводом в битовый поток.
+
+// В A_Huffman код каждой буквы - String, а результат - строка из '0' и '1',
+// т.е. 16 бит кучи на каждый закодированный бит. Здесь:
+//  - частоты считаются по байтам (алфавит 0..255, а не только строчные буквы);
+//  - по частотам строятся только длины кодов (куча на long[] без объектов Node),
+//    а сами коды назначаются канонически: по возрастанию длины, при равной длине -
+//    по возрастанию байта. Поэтому для передачи кода достаточно 256 длин;
+//  - закодированный текст упаковывается в long[] (первый бит - старший бит слова)
+//    и может быть записан прямо в FileChannel.
+
+// Формат файла (encode(File, FileChannel)):
+//      256 байт     длины кодов байтов 0..255 (0 - байт не встречается)
+//      8 байт       число бит закодированного текста (big-endian)
+//      ...          сами биты, старший бит каждого байта - первый
+
+//        Sample Input:
+//        abacabad
+//
+//        Sample Output:
+//        a: 0
+//        b: 10
+//        c: 110
+//        d: 111
+//        01001100100111
+
+public class A_HuffmanPacked {
+
+    static final int ALPHABET = 256;
+    static final int HEADER = ALPHABET + Long.BYTES;
+    //окно отображения файла в память
+    private static final int WINDOW = 64 << 20;
+    //сколько слов копить перед сбросом в канал
+    private static final int FLUSH_WORDS = 1 << 16;
+
+    //результат кодирования в памяти
+    static class Encoded {
+        final int[] lengths;   //длина кода каждого байта
+        final long[] codes;    //канонический код каждого байта (младшие lengths[b] бит)
+        final long[] bits;     //упакованный текст
+        final long bitLength;  //число значащих бит в bits
+
+        Encoded(int[] lengths, long[] codes, long[] bits, long bitLength) {
+            this.lengths = lengths;
+            this.codes = codes;
+            this.bits = bits;
+            this.bitLength = bitLength;
+        }
+
+        //текст как строка '0'/'1' (для сравнения с A_Huffman)
+        String toBitString() {
+            StringBuilder sb = new StringBuilder((int) bitLength);
+            for (long i = 0; i < bitLength; i++) {
+                sb.append((char) ('0' + ((bits[(int) (i >>> 6)] >>> (63 - (i & 63))) & 1)));
+            }
+            return sb.toString();
+        }
+
+        //текст как байты (без заголовка)
+        ByteBuffer toByteBuffer() {
+            ByteBuffer buffer = ByteBuffer.allocate((int) ((bitLength + 7) >>> 3));
+            int full = buffer.capacity() / Long.BYTES;
+            for (int i = 0; i < full; i++) {
+                buffer.putLong(bits[i]);
+            }
+            for (int shift = 56; buffer.hasRemaining(); shift -= 8) {
+                buffer.put((byte) (bits[full] >>> shift));
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    //запись кодов в поток бит
+    static class BitWriter {
+        long[] words;
+        int count;            //сколько слов заполнено целиком
+        long bitLength;       //сколько всего бит записано
+        private long current; //заполняемое слово
+        private int used;     //сколько бит в нем занято
+
+        BitWriter() {
+            this(1024 * 64);
+        }
+
+        //expectedBits - ожидаемая длина потока, чтобы массив не приходилось расширять
+        BitWriter(long expectedBits) {
+            words = new long[(int) Math.max(1, (expectedBits + 63) >>> 6)];
+        }
+
+        //code - младшие length бит, 1<=length<=64
+        void write(long code, int length) {
+            int free = 64 - used;
+            bitLength += length;
+            if (length < free) {
+                current |= code << (free - length);
+                used += length;
+                return;
+            }
+            int rest = length - free;
+            current |= code >>> rest;
+            push(current);
+            current = rest == 0 ? 0 : code << (64 - rest);
+            used = rest;
+        }
+
+        //дописывает неполное слово (хвост дополняется нулями)
+        void finish() {
+            if (used > 0) {
+                push(current);
+                current = 0;
+                used = 0;
+            }
+        }
+
+        //сброс заполненных слов в канал (неполное слово остается в писателе)
+        void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+            for (int i = 0; i < count; i++) {
+                if (!buffer.hasRemaining()) {
+                    flush(channel, buffer);
+                }
+                buffer.putLong(words[i]);
+            }
+            count = 0;
+        }
+
+        //последний сброс после finish(): от последнего слова пишутся только значащие байты
+        void drainLast(FileChannel channel, ByteBuffer buffer) throws IOException {
+            if (count == 0)
+                return;
+            long last = words[--count];
+            int bytes = (int) (((bitLength + 7) >>> 3) - ((bitLength - 1) >>> 6) * 8);
+            drain(channel, buffer);
+            for (int shift = 56; bytes > 0; bytes--, shift -= 8) {
+                if (!buffer.hasRemaining()) {
+                    flush(channel, buffer);
+                }
+                buffer.put((byte) (last >>> shift));
+            }
+        }
+
+        private void push(long word) {
+            if (count == words.length) {
+                long[] grown = new long[words.length * 2];
+                System.arraycopy(words, 0, grown, 0, count);
+                words = grown;
+            }
+            words[count++] = word;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String root = System.getProperty("user.dir") + "/src/";
+        File f = new File(root + "by/it/a_khmelev/lesson03/dataHuffman.txt");
+        A_HuffmanPacked instance = new A_HuffmanPacked();
+        long startTime = System.currentTimeMillis();
+        Encoded result = instance.encode(f);
+        long finishTime = System.currentTimeMillis();
+        int k = 0;
+        for (int length : result.lengths) {
+            if (length > 0) k++;
+        }
+        System.out.printf("%d %d\n", k, result.bitLength);
+        for (int b = 0; b < ALPHABET; b++) {
+            if (result.lengths[b] > 0) {
+                System.out.printf("%s: %s\n", (char) b, toBits(result.codes[b], result.lengths[b]));
+            }
+        }
+        System.out.println(result.toBitString());
+        System.out.printf("time=%d\n", finishTime - startTime);
+    }
+
+    //кодирует первое слово файла (как A_Huffman.encode)
+    Encoded encode(File file) throws IOException {
+        String s = new String(Files.readAllBytes(file.toPath())).trim().split("\\s+")[0];
+        return encode(s.getBytes());
+    }
+
+    Encoded encode(byte[] data) {
+        long[] frequencies = new long[ALPHABET];
+        count(ByteBuffer.wrap(data), frequencies);
+        int[] lengths = codeLengths(frequencies);
+        long[] codes = canonicalCodes(lengths);
+        BitWriter writer = new BitWriter(cost(frequencies, lengths));
+        for (byte b : data) {
+            int symbol = b & 0xFF;
+            writer.write(codes[symbol], lengths[symbol]);
+        }
+        writer.finish();
+        return new Encoded(lengths, codes, writer.words, writer.bitLength);
+    }
+
+    //кодирует файл целиком (любые байты) прямо в канал; возвращает число бит текста
+    long encode(File input, FileChannel out) throws IOException {
+        try (FileChannel in = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+            long size = in.size();
+            long[] frequencies = new long[ALPHABET];
+            for (long from = 0; from < size; from += WINDOW) {
+                count(in.map(FileChannel.MapMode.READ_ONLY, from, Math.min(WINDOW, size - from)), frequencies);
+            }
+            int[] lengths = codeLengths(frequencies);
+            long[] codes = canonicalCodes(lengths);
+
+            long headerPosition = out.position();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            for (int length : lengths) {
+                buffer.put((byte) length);
+            }
+            buffer.putLong(0); //число бит допишем в конце
+            BitWriter writer = new BitWriter((FLUSH_WORDS + 1) * 64L);
+            for (long from = 0; from < size; from += WINDOW) {
+                MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, from, Math.min(WINDOW, size - from));
+                while (window.hasRemaining()) {
+                    int symbol = window.get() & 0xFF;
+                    writer.write(codes[symbol], lengths[symbol]);
+                    if (writer.count >= FLUSH_WORDS) {
+                        writer.drain(out, buffer);
+                    }
+                }
+            }
+            writer.finish();
+            writer.drainLast(out, buffer);
+            flush(out, buffer);
+            ByteBuffer bitLength = ByteBuffer.allocate(Long.BYTES).putLong(writer.bitLength);
+            bitLength.flip();
+            out.write(bitLength, headerPosition + ALPHABET);
+            return writer.bitLength;
+        }
+    }
+
+    static void count(ByteBuffer data, long[] frequencies) {
+        while (data.hasRemaining()) {
+            frequencies[data.get() & 0xFF]++;
+        }
+    }
+
+    //длины кодов Хаффмана по частотам (0 для отсутствующих байтов).
+    //Куча хранит узлы как long: частота << 9 | номер узла, поэтому объекты не нужны
+    static int[] codeLengths(long[] frequencies) {
+        int n = frequencies.length;
+        int[] lengths = new int[n];
+        long[] heap = new long[n];
+        int size = 0;
+        for (int symbol = 0; symbol < n; symbol++) {
+            if (frequencies[symbol] > 0) {
+                heap[size] = frequencies[symbol] << 9 | symbol;
+                siftUp(heap, size++);
+            }
+        }
+        if (size == 0)
+            return lengths;
+        if (size == 1) {
+            //единственному символу нужен код хотя бы из одного бита
+            lengths[(int) (heap[0] & 0x1FF)] = 1;
+            return lengths;
+        }
+        //узлы 0..n-1 - листья, n..2n-2 - внутренние; parent - родитель каждого узла
+        int[] parent = new int[2 * n];
+        int next = n;
+        while (size > 1) {
+            long a = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, 0, size);
+            long b = heap[0];
+            int node = next++;
+            parent[(int) (a & 0x1FF)] = node;
+            parent[(int) (b & 0x1FF)] = node;
+            heap[0] = ((a >>> 9) + (b >>> 9)) << 9 | node;
+            siftDown(heap, 0, size);
+        }
+        //глубина узла = глубина родителя + 1, родители всегда имеют больший номер
+        int root = next - 1;
+        int[] depth = new int[2 * n];
+        for (int node = root - 1; node >= n; node--) {
+            depth[node] = depth[parent[node]] + 1;
+        }
+        for (int symbol = 0; symbol < n; symbol++) {
+            if (frequencies[symbol] > 0) {
+                lengths[symbol] = depth[parent[symbol]] + 1;
+            }
+        }
+        return lengths;
+    }
+
+    //длина закодированного текста в битах
+    static long cost(long[] frequencies, int[] lengths) {
+        long bits = 0;
+        for (int symbol = 0; symbol < frequencies.length; symbol++) {
+            bits += frequencies[symbol] * lengths[symbol];
+        }
+        return bits;
+    }
+
+    //канонические коды: по возрастанию длины, внутри длины - по возрастанию символа
+    static long[] canonicalCodes(int[] lengths) {
+        int max = 0;
+        for (int length : lengths) {
+            max = Math.max(max, length);
+        }
+        if (max > 64)
+            throw new IllegalArgumentException("код длиной " + max + " бит не помещается в long");
+        long[] perLength = new long[max + 1];
+        for (int length : lengths) {
+            if (length > 0) perLength[length]++;
+        }
+        //первый код каждой длины
+        long[] next = new long[max + 2];
+        long code = 0;
+        for (int length = 1; length <= max; length++) {
+            code = (code + perLength[length - 1]) << 1;
+            next[length] = code;
+        }
+        long[] codes = new long[lengths.length];
+        for (int symbol = 0; symbol < lengths.length; symbol++) {
+            if (lengths[symbol] > 0) {
+                codes[symbol] = next[lengths[symbol]]++;
+            }
+        }
+        return codes;
+    }
+
+    static String toBits(long code, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = length - 1; i >= 0; i--) {
+            sb.append((char) ('0' + ((code >>> i) & 1)));
+        }
+        return sb.toString();
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heap[parent] <= heap[i]) break;
+            long t = heap[parent];
+            heap[parent] = heap[i];
+            heap[i] = t;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int i, int size) {
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (heap[i] <= heap[child]) break;
+            long t = heap[child];
+            heap[child] = heap[i];
+            heap[i] = t;
+            i = child;
+        }
+    }
+}
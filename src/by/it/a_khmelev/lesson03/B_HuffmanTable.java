@@ -0,0 +1,322 @@
+package by.it.a_khmelev.lesson03;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.Scanner;
+
+// Lesson 3. B_Huffman, табличный вариант.
+// Восстановите строку по её коду и беспрефиксному коду символов (формат как в B_Huffman),
+// либо восстановите байты из файла A_HuffmanPacked (длины канонических кодов + упакованные биты).
+
+// Вместо прохода по дереву на каждый бит декодер читает сразу TABLE_BITS бит
+// и по основной таблице (2^TABLE_BITS записей) получает до 4 символов за одно обращение:
+// запись хранит сами символы, длину первого кода и сколько бит занимают все символы записи.
+// Коды длиннее TABLE_BITS декодируются через вторичные таблицы: основная запись для
+// такого префикса указывает на таблицу по следующим (maxLen - TABLE_BITS) битам.
+
+// Таблица строится по тройкам (символ, код, длина), поэтому годится для любого
+// беспрефиксного кода из файла. Для упакованного формата коды канонические
+// и восстанавливаются только по длинам (A_HuffmanPacked.canonicalCodes).
+
+//        Sample Input:
+//        4 14
+//        a: 0
+//        b: 10
+//        c: 110
+//        d: 111
+//        01001100100111
+
+//        Sample Output:
+//        abacabad
+
+public class B_HuffmanTable {
+
+    static final int TABLE_BITS = 12;
+    //на сколько бит дальше TABLE_BITS может заглядывать вторичная таблица
+    static final int MAX_SECONDARY_BITS = 16;
+    static final int MAX_CODE_LENGTH = TABLE_BITS + MAX_SECONDARY_BITS;
+    //символов в одной записи основной таблицы
+    private static final int SYMBOLS_PER_ENTRY = 4;
+
+    //таблицы декодирования для одного кода
+    static class Table {
+        //основная запись: символы (4 x 8 бит) | длина первого кода << 32 | всего бит << 38 | число символов << 44;
+        //число символов 0 - длинный код: смещение вторичной таблицы (32 бита) | ее ширина << 32
+        private final long[] primary;
+        //вторичная запись: символ | длина кода << 32
+        private final long[] secondary;
+        private final int minLength;
+
+        Table(int[] lengths, long[] codes) {
+            int mask = (1 << TABLE_BITS) - 1;
+            long[] single = new long[1 << TABLE_BITS];
+            int[] subBits = new int[1 << TABLE_BITS];
+            int min = Integer.MAX_VALUE;
+            int symbols = 0;
+            for (int symbol = 0; symbol < lengths.length; symbol++) {
+                int length = lengths[symbol];
+                if (length == 0) continue;
+                if (length > MAX_CODE_LENGTH)
+                    throw new IllegalArgumentException("код символа " + symbol + " длиной " + length
+                            + " бит длиннее " + MAX_CODE_LENGTH + ", нужен код с ограниченной длиной (A_HuffmanLimited)");
+                symbols++;
+                min = Math.min(min, length);
+                if (length <= TABLE_BITS) {
+                    //все окна, начинающиеся с этого кода
+                    int first = (int) (codes[symbol] << (TABLE_BITS - length));
+                    for (int w = first; w < first + (1 << (TABLE_BITS - length)); w++) {
+                        single[w] = symbol | (long) length << 32 | (long) length << 38 | 1L << 44;
+                    }
+                } else {
+                    int prefix = (int) (codes[symbol] >>> (length - TABLE_BITS));
+                    subBits[prefix] = Math.max(subBits[prefix], length - TABLE_BITS);
+                }
+            }
+            if (symbols == 0)
+                throw new IllegalArgumentException("пустой код");
+            minLength = min;
+
+            //вторичные таблицы: по одной на каждый префикс длинных кодов
+            int total = 0;
+            for (int prefix = 0; prefix <= mask; prefix++) {
+                if (subBits[prefix] > 0) {
+                    single[prefix] = total | (long) subBits[prefix] << 32;
+                    total += 1 << subBits[prefix];
+                }
+            }
+            secondary = new long[total];
+            for (int symbol = 0; symbol < lengths.length; symbol++) {
+                int length = lengths[symbol];
+                if (length <= TABLE_BITS) continue;
+                int prefix = (int) (codes[symbol] >>> (length - TABLE_BITS));
+                int offset = (int) single[prefix];
+                int width = subBits[prefix];
+                int rest = length - TABLE_BITS;
+                int first = (int) ((codes[symbol] & ((1L << rest) - 1)) << (width - rest));
+                for (int w = first; w < first + (1 << (width - rest)); w++) {
+                    secondary[offset + w] = symbol | (long) length << 32;
+                }
+            }
+
+            //несколько символов на запись: пока следующий код целиком помещается в окно
+            primary = new long[1 << TABLE_BITS];
+            for (int w = 0; w <= mask; w++) {
+                long first = single[w];
+                if ((first >>> 44) == 0) {
+                    primary[w] = first; //длинный код
+                    continue;
+                }
+                long entry = first & 0xFF;
+                int used = (int) ((first >>> 32) & 63);
+                int count = 1;
+                while (count < SYMBOLS_PER_ENTRY) {
+                    long next = single[(w << used) & mask];
+                    if ((next >>> 44) == 0) break;
+                    int length = (int) ((next >>> 32) & 63);
+                    if (used + length > TABLE_BITS) break;
+                    entry |= (next & 0xFF) << (8 * count);
+                    used += length;
+                    count++;
+                }
+                primary[w] = entry | (first & (63L << 32)) | (long) used << 38 | (long) count << 44;
+            }
+        }
+
+        //декодирует bitLength бит из bits (первый бит - старший бит bits[0])
+        byte[] decode(long[] bits, long bitLength) {
+            //каждый символ занимает не меньше minLength бит, поэтому размер результата ограничен
+            //заранее; запас SYMBOLS_PER_ENTRY позволяет писать запись целиком без проверок
+            long bound = bitLength / minLength;
+            if (bound > Integer.MAX_VALUE - 16)
+                throw new IllegalArgumentException("результат не помещается в массив: до " + bound + " символов");
+            byte[] out = new byte[(int) bound + SYMBOLS_PER_ENTRY];
+            int size = 0;
+            long position = 0;
+            //быстрый путь: окно целиком из данных, все символы записи настоящие
+            long fast = bitLength - TABLE_BITS;
+            while (position <= fast) {
+                int index = (int) (position >>> 6);
+                int offset = (int) (position & 63);
+                long value = bits[index] << offset;
+                if (offset > 64 - TABLE_BITS) {
+                    value |= bits[index + 1] >>> (64 - offset);
+                }
+                long entry = primary[(int) (value >>> (64 - TABLE_BITS))];
+                int count = (int) (entry >>> 44);
+                if (count == 0) {
+                    long second = decodeLong(bits, bitLength, position, entry);
+                    out[size++] = (byte) second;
+                    position += second >>> 32;
+                    continue;
+                }
+                out[size] = (byte) entry;
+                out[size + 1] = (byte) (entry >>> 8);
+                out[size + 2] = (byte) (entry >>> 16);
+                out[size + 3] = (byte) (entry >>> 24);
+                size += count;
+                position += (entry >>> 38) & 63;
+            }
+            //хвост короче окна: берем только первый символ записи и проверяем его длину
+            while (position < bitLength) {
+                long entry = primary[peek(bits, position, TABLE_BITS)];
+                if ((entry >>> 44) == 0) {
+                    long second = decodeLong(bits, bitLength, position, entry);
+                    out[size++] = (byte) second;
+                    position += second >>> 32;
+                    continue;
+                }
+                int length = (int) ((entry >>> 32) & 63);
+                if (length > bitLength - position)
+                    throw new IllegalArgumentException("поток обрывается на позиции " + position);
+                out[size++] = (byte) entry;
+                position += length;
+            }
+            byte[] result = new byte[size];
+            System.arraycopy(out, 0, result, 0, size);
+            return result;
+        }
+
+        //запись вторичной таблицы (символ | длина << 32) для длинного кода на позиции position
+        private long decodeLong(long[] bits, long bitLength, long position, long entry) {
+            int width = (int) (entry >>> 32);
+            if (width == 0)
+                throw new IllegalArgumentException("в потоке нет кода с префиксом на позиции " + position);
+            long second = secondary[(int) entry + peek(bits, position + TABLE_BITS, width)];
+            int length = (int) (second >>> 32);
+            if (length == 0 || length > bitLength - position)
+                throw new IllegalArgumentException("неверный код на позиции " + position);
+            return second;
+        }
+    }
+
+    //n (1..32) бит начиная с position, за концом массива - нули
+    static int peek(long[] bits, long position, int n) {
+        int index = (int) (position >>> 6);
+        int offset = (int) (position & 63);
+        long value = index < bits.length ? bits[index] << offset : 0;
+        if (offset > 0 && index + 1 < bits.length) {
+            value |= bits[index + 1] >>> (64 - offset);
+        }
+        return (int) (value >>> (64 - n));
+    }
+
+    //текстовый формат B_Huffman: "k l", k строк "letter: code", строка из l бит
+    String decode(File file) throws FileNotFoundException {
+        Scanner scanner = new Scanner(file);
+        int count = scanner.nextInt();
+        int length = scanner.nextInt();
+        int[] lengths = new int[A_HuffmanPacked.ALPHABET];
+        long[] codes = new long[A_HuffmanPacked.ALPHABET];
+        for (int i = 0; i < count; i++) {
+            String letter = scanner.next();
+            String code = scanner.next();
+            int symbol = letter.charAt(0) & 0xFF;
+            if (code.length() > 64)
+                throw new IllegalArgumentException("код " + letter + " длиннее 64 бит");
+            lengths[symbol] = code.length();
+            codes[symbol] = Long.parseUnsignedLong(code, 2);
+        }
+        String text = scanner.next();
+        if (text.length() != length)
+            throw new IllegalArgumentException("ожидалось " + length + " бит, прочитано " + text.length());
+        return new String(new Table(lengths, codes).decode(pack(text), text.length()));
+    }
+
+    //файл A_HuffmanPacked: 256 длин, число бит, упакованные биты
+    byte[] decodePacked(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(A_HuffmanPacked.HEADER);
+            while (header.hasRemaining() && channel.read(header) >= 0) ;
+            header.flip();
+            int[] lengths = new int[A_HuffmanPacked.ALPHABET];
+            for (int symbol = 0; symbol < lengths.length; symbol++) {
+                lengths[symbol] = header.get() & 0xFF;
+            }
+            long bitLength = header.getLong();
+            long[] bits = new long[(int) ((bitLength + 63) >>> 6)];
+            ByteBuffer data = ByteBuffer.allocate(bits.length * Long.BYTES);
+            while (channel.read(data) > 0) ;
+            data.flip();
+            data.limit(data.capacity()); //хвост последнего слова - нули
+            data.asLongBuffer().get(bits);
+            return new Table(lengths, A_HuffmanPacked.canonicalCodes(lengths)).decode(bits, bitLength);
+        }
+    }
+
+    //строка '0'/'1' -> биты (первый символ - старший бит первого слова)
+    static long[] pack(String text) {
+        long[] bits = new long[(text.length() + 63) >>> 6];
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '1') {
+                bits[i >>> 6] |= 1L << (63 - (i & 63));
+            }
+        }
+        return bits;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String root = System.getProperty("user.dir") + "/src/";
+        File f = new File(root + "by/it/a_khmelev/lesson03/encodeHuffman.txt");
+        B_HuffmanTable instance = new B_HuffmanTable();
+        String result = instance.decode(f);
+        System.out.println(result);
+
+        //замер на ~100 МБ закодированного текста (размер можно задать аргументом, МБ)
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        Random random = new Random(1);
+        byte[] data = new byte[megabytes * 1_600_000]; //~5 бит на символ
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (random.nextGaussian() * 10);
+        }
+        A_HuffmanPacked.Encoded encoded = new A_HuffmanPacked().encode(data);
+        Table table = new Table(encoded.lengths, encoded.codes);
+        System.out.printf("закодировано %d МБ\n", encoded.bitLength >>> 23);
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            byte[] decoded = table.decode(encoded.bits, encoded.bitLength);
+            long tableNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            byte[] slow = decodeByTree(encoded.lengths, encoded.codes, encoded.bits, encoded.bitLength, data.length);
+            long treeNanos = System.nanoTime() - start;
+            System.out.printf("таблица: %d мс (%.0f МБ/с), дерево по битам: %d мс, совпадает: %b\n",
+                    tableNanos / 1_000_000, (encoded.bitLength >>> 3) * 1e3 / tableNanos,
+                    treeNanos / 1_000_000, java.util.Arrays.equals(decoded, data) && java.util.Arrays.equals(slow, data));
+        }
+    }
+
+    //для сравнения: один шаг по дереву (на массивах) на каждый бит
+    static byte[] decodeByTree(int[] lengths, long[] codes, long[] bits, long bitLength, int expected) {
+        int[][] child = new int[2][2 * lengths.length];
+        int nodes = 1;
+        for (int symbol = 0; symbol < lengths.length; symbol++) {
+            int node = 0;
+            for (int i = lengths[symbol] - 1; i >= 0; i--) {
+                int bit = (int) ((codes[symbol] >>> i) & 1);
+                if (i == 0) {
+                    child[bit][node] = -1 - symbol;
+                } else {
+                    if (child[bit][node] == 0) child[bit][node] = nodes++;
+                    node = child[bit][node];
+                }
+            }
+        }
+        byte[] out = new byte[expected];
+        int size = 0;
+        int node = 0;
+        for (long i = 0; i < bitLength; i++) {
+            int next = child[(int) ((bits[(int) (i >>> 6)] >>> (63 - (i & 63))) & 1)][node];
+            if (next < 0) {
+                out[size++] = (byte) (-1 - next);
+                node = 0;
+            } else {
+                node = next;
+            }
+        }
+        return out;
+    }
+}
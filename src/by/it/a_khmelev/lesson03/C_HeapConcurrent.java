@@ -0,0 +1,231 @@
+package by.it.a_khmelev.lesson03;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+// Lesson 3. C_Heap для нескольких потоков.
+// Одна куча под замком выполняет команды всех потоков строго по очереди.
+//  - MultiQueue: queues = c * p куч (p - число потоков, c - коэффициент ослабления),
+//    у каждой свой замок. Insert кладет значение в случайную свободную кучу,
+//    ExtractMax смотрит вершины двух случайных куч и извлекает из лучшей.
+//    Извлекается не обязательно максимум, а одно из O(queues) наибольших значений
+//    (ослабление по рангу), зато потоки почти не ждут друг друга. queues = 1 - строгая очередь.
+//  - SkipList: строгая очередь без блокировок на ConcurrentSkipListSet.
+//    Одинаковые значения различаются порядковым номером в младших битах ключа,
+//    поэтому значения ограничены 0..MAX_VALUE (в задаче x <= 10^9). Номер идет по кругу,
+//    при совпадении ключа с еще не извлеченным вставка повторяется со следующим номером.
+//  - Locked: одна C_HeapMaxFast.MaxHeap под synchronized - для сравнения.
+// ExtractMax на пустой очереди возвращает EMPTY (в findMaxValue такая команда пропускается).
+
+// main - замер масштабирования от 1 до N потоков (-Dbench.threads=N, по умолчанию
+// число процессоров): каждый поток выполняет свою трассу C_HeapVariants.trace.
+
+public class C_HeapConcurrent {
+
+    static final long EMPTY = Long.MIN_VALUE;
+
+    //max-очередь, которую можно использовать из нескольких потоков
+    interface Queue {
+        void insert(long value);
+
+        //наибольшее (для ослабленных очередей - одно из наибольших) значение или EMPTY
+        long extractMax();
+    }
+
+    static class MultiQueue implements Queue {
+        private final C_HeapMaxFast.MaxHeap[] heaps;
+        private final ReentrantLock[] locks;
+        //вершины куч для выбора без блокировки (EMPTY - куча пуста)
+        private final AtomicLong[] tops;
+
+        MultiQueue(int queues) {
+            if (queues < 1)
+                throw new IllegalArgumentException("нужна хотя бы одна куча, а не " + queues);
+            heaps = new C_HeapMaxFast.MaxHeap[queues];
+            locks = new ReentrantLock[queues];
+            tops = new AtomicLong[queues];
+            for (int i = 0; i < queues; i++) {
+                heaps[i] = new C_HeapMaxFast.MaxHeap();
+                locks[i] = new ReentrantLock();
+                tops[i] = new AtomicLong(EMPTY);
+            }
+        }
+
+        //c куч на каждый из threads потоков
+        MultiQueue(int threads, int c) {
+            this(threads * c);
+        }
+
+        @Override
+        public void insert(long value) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int n = heaps.length;
+            int i = random.nextInt(n);
+            while (!locks[i].tryLock()) {
+                i = random.nextInt(n);
+            }
+            try {
+                heaps[i].insert(value);
+                tops[i].set(heaps[i].max());
+            } finally {
+                locks[i].unlock();
+            }
+        }
+
+        @Override
+        public long extractMax() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int n = heaps.length;
+            //две случайные кучи; пока находятся непустые - берем лучшую из пары
+            for (int attempt = 0; attempt < 2 * n; attempt++) {
+                int i = random.nextInt(n);
+                int j = random.nextInt(n);
+                if (tops[j].get() > tops[i].get()) i = j;
+                if (tops[i].get() == EMPTY) continue;
+                if (!locks[i].tryLock()) continue;
+                try {
+                    if (!heaps[i].isEmpty()) return extract(i);
+                } finally {
+                    locks[i].unlock();
+                }
+            }
+            //кучи почти пусты: обход всех по порядку, EMPTY - только если пусты все
+            for (int i = 0; i < n; i++) {
+                if (tops[i].get() == EMPTY) continue;
+                locks[i].lock();
+                try {
+                    if (!heaps[i].isEmpty()) return extract(i);
+                } finally {
+                    locks[i].unlock();
+                }
+            }
+            return EMPTY;
+        }
+
+        //вызывается под замком кучи i
+        private long extract(int i) {
+            long result = heaps[i].extractMax();
+            tops[i].set(heaps[i].isEmpty() ? EMPTY : heaps[i].max());
+            return result;
+        }
+    }
+
+    static class SkipList implements Queue {
+        static final long MAX_VALUE = (1L << 30) - 1;
+        private static final int SEQUENCE_BITS = 33;
+        private final ConcurrentSkipListSet<Long> set = new ConcurrentSkipListSet<>();
+        private final AtomicLong sequence = new AtomicLong();
+
+        @Override
+        public void insert(long value) {
+            if (value < 0 || value > MAX_VALUE)
+                throw new IllegalArgumentException("значение " + value + " вне 0.." + MAX_VALUE);
+            //после 2^33 вставок номера повторяются: если такой ключ еще в очереди, берется следующий номер
+            boolean added;
+            do {
+                added = set.add(value << SEQUENCE_BITS | (sequence.getAndIncrement() & ((1L << SEQUENCE_BITS) - 1)));
+            } while (!added);
+        }
+
+        @Override
+        public long extractMax() {
+            Long key = set.pollLast();
+            return key == null ? EMPTY : key >>> SEQUENCE_BITS;
+        }
+    }
+
+    static class Locked implements Queue {
+        private final C_HeapMaxFast.MaxHeap heap = new C_HeapMaxFast.MaxHeap();
+
+        @Override
+        public synchronized void insert(long value) {
+            heap.insert(value);
+        }
+
+        @Override
+        public synchronized long extractMax() {
+            return heap.isEmpty() ? EMPTY : heap.extractMax();
+        }
+    }
+
+    //как C_HeapMax.findMaxValue, но над очередью queue
+    static Long findMaxValue(InputStream stream, Queue queue) throws IOException {
+        return replay(C_HeapVariants.trace(stream), queue);
+    }
+
+    //выполняет трассу (>= 0 - Insert, -1 - ExtractMax); возвращает наибольшее извлеченное значение
+    static long replay(long[] ops, Queue queue) {
+        long max = 0;
+        for (long op : ops) {
+            if (op >= 0) {
+                queue.insert(op);
+            } else {
+                long value = queue.extractMax();
+                if (value > max) max = value;
+            }
+        }
+        return max;
+    }
+
+    //все потоки одновременно выполняют свои трассы; возвращает время в наносекундах
+    static long run(Queue queue, long[][] traces) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (long[] trace : traces) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                replay(trace, queue);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String root = System.getProperty("user.dir") + "/src/";
+        try (InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson03/heapData.txt")) {
+            System.out.println("MAX=" + findMaxValue(stream, new SkipList()));
+        }
+
+        int maxThreads = Integer.getInteger("bench.threads", Runtime.getRuntime().availableProcessors());
+        int perThread = Integer.getInteger("bench.ops", 2_000_000);
+        int c = Integer.getInteger("bench.c", 4);
+        String[] names = {"locked", "skiplist", "multiqueue-c" + c};
+        List<IntFunction<Queue>> factories = new ArrayList<>();
+        factories.add(p -> new Locked());
+        factories.add(p -> new SkipList());
+        factories.add(p -> new MultiQueue(p, c));
+        System.out.printf("%-16s %8s %14s\n", "queue", "threads", "ops/s");
+        for (int p = 1; p <= maxThreads; p = p < maxThreads && 2 * p > maxThreads ? maxThreads : 2 * p) {
+            long[][] traces = new long[p][];
+            for (int t = 0; t < p; t++) {
+                traces[t] = C_HeapVariants.trace(perThread, t + 1);
+            }
+            for (int q = 0; q < names.length; q++) {
+                run(factories.get(q).apply(p), traces); //прогрев
+                long nanos = run(factories.get(q).apply(p), traces);
+                System.out.printf("%-16s %8d %14.0f\n", names[q], p, (double) p * perThread * 1e9 / nanos);
+            }
+        }
+    }
+}
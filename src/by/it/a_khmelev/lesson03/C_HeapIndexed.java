@@ -0,0 +1,462 @@
+package by.it.a_khmelev.lesson03;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Lesson 3. C_Heap с изменением приоритета.
+// В C_HeapMax значение нельзя найти в куче, поэтому алгоритм Дейкстры (Прима)
+// при улучшении расстояния кладет вершину в кучу повторно, и куча растет до числа ребер.
+// Здесь элементы - целые дескрипторы 0..capacity-1 (например, номера вершин)
+// со своими ключами, и у каждого дескриптора можно изменить ключ или удалить его:
+//  - IndexedDaryHeap: d-арная min-куча по ключам, pos[h] - место дескриптора в массиве,
+//    decreaseKey/increaseKey/remove - просеивание от этого места, O(log n);
+//  - PairingHeap: парная куча на массивах child/sibling/prev. insert и decreaseKey - O(1)
+//    (вырезать поддерево и слить с корнем), extractMin и remove - двухпроходное
+//    слияние детей, O(log n) амортизированно.
+// Куча - min: в задачах на графах извлекается ближайшая вершина.
+// main сравнивает Дейкстру на обеих кучах с вариантом "повторная вставка" на C_HeapMaxFast.
+
+public class C_HeapIndexed {
+
+    //min-куча дескрипторов 0..capacity-1 с ключами long
+    interface IndexedHeap {
+        void insert(int handle, long key);
+
+        //дескриптор с наименьшим ключом (куча не пуста)
+        int extractMin();
+
+        boolean contains(int handle);
+
+        long key(int handle);
+
+        void decreaseKey(int handle, long key);
+
+        void increaseKey(int handle, long key);
+
+        void remove(int handle);
+
+        int size();
+
+        default boolean isEmpty() {
+            return size() == 0;
+        }
+    }
+
+    static class IndexedDaryHeap implements IndexedHeap {
+        private final int shift;
+        private final int d;
+        private final int[] heap; //дескрипторы в порядке кучи
+        private final int[] pos;  //pos[h] - место h в heap, -1 - h нет в куче
+        private final long[] keys;
+        private int size;
+
+        IndexedDaryHeap(int d, int capacity) {
+            if (d < 2 || Integer.bitCount(d) != 1)
+                throw new IllegalArgumentException("арность " + d + " должна быть степенью двойки не меньше 2");
+            this.d = d;
+            shift = Integer.numberOfTrailingZeros(d);
+            heap = new int[capacity];
+            pos = new int[capacity];
+            keys = new long[capacity];
+            Arrays.fill(pos, -1);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(int handle) {
+            return pos[handle] >= 0;
+        }
+
+        @Override
+        public long key(int handle) {
+            check(handle);
+            return keys[handle];
+        }
+
+        @Override
+        public void insert(int handle, long key) {
+            if (pos[handle] >= 0)
+                throw new IllegalArgumentException("дескриптор " + handle + " уже в куче");
+            keys[handle] = key;
+            pos[handle] = size;
+            heap[size] = handle;
+            siftUp(size++);
+        }
+
+        @Override
+        public int extractMin() {
+            if (size == 0)
+                throw new IllegalStateException("куча пуста");
+            int result = heap[0];
+            removeAt(0);
+            return result;
+        }
+
+        @Override
+        public void decreaseKey(int handle, long key) {
+            check(handle);
+            if (key > keys[handle])
+                throw new IllegalArgumentException("новый ключ " + key + " больше текущего " + keys[handle]);
+            keys[handle] = key;
+            siftUp(pos[handle]);
+        }
+
+        @Override
+        public void increaseKey(int handle, long key) {
+            check(handle);
+            if (key < keys[handle])
+                throw new IllegalArgumentException("новый ключ " + key + " меньше текущего " + keys[handle]);
+            keys[handle] = key;
+            siftDown(pos[handle]);
+        }
+
+        @Override
+        public void remove(int handle) {
+            check(handle);
+            removeAt(pos[handle]);
+        }
+
+        private void check(int handle) {
+            if (pos[handle] < 0)
+                throw new IllegalArgumentException("дескриптора " + handle + " нет в куче");
+        }
+
+        private void removeAt(int i) {
+            pos[heap[i]] = -1;
+            int last = heap[--size];
+            if (i == size)
+                return;
+            heap[i] = last;
+            pos[last] = i;
+            siftUp(i);
+            siftDown(pos[last]);
+        }
+
+        private void siftUp(int i) {
+            int handle = heap[i];
+            long key = keys[handle];
+            while (i > 0) {
+                int parent = (i - 1) >>> shift;
+                int p = heap[parent];
+                if (keys[p] <= key) break;
+                heap[i] = p;
+                pos[p] = i;
+                i = parent;
+            }
+            heap[i] = handle;
+            pos[handle] = i;
+        }
+
+        private void siftDown(int i) {
+            int handle = heap[i];
+            long key = keys[handle];
+            while (true) {
+                int first = (i << shift) + 1;
+                if (first >= size) break;
+                int last = Math.min(first + d, size);
+                int child = first;
+                long best = keys[heap[first]];
+                for (int c = first + 1; c < last; c++) {
+                    long k = keys[heap[c]];
+                    if (k < best) {
+                        best = k;
+                        child = c;
+                    }
+                }
+                if (key <= best) break;
+                int h = heap[child];
+                heap[i] = h;
+                pos[h] = i;
+                i = child;
+            }
+            heap[i] = handle;
+            pos[handle] = i;
+        }
+    }
+
+    static class PairingHeap implements IndexedHeap {
+        private static final int NONE = -1;
+        private final long[] keys;
+        private final int[] child;   //самый левый ребенок
+        private final int[] sibling; //следующий брат справа
+        private final int[] prev;    //левый брат, для самого левого ребенка - родитель
+        private final boolean[] in;
+        private int[] pairs = new int[16]; //рабочий массив двухпроходного слияния
+        private int root = NONE;
+        private int size;
+
+        PairingHeap(int capacity) {
+            keys = new long[capacity];
+            child = new int[capacity];
+            sibling = new int[capacity];
+            prev = new int[capacity];
+            in = new boolean[capacity];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(int handle) {
+            return in[handle];
+        }
+
+        @Override
+        public long key(int handle) {
+            check(handle);
+            return keys[handle];
+        }
+
+        @Override
+        public void insert(int handle, long key) {
+            if (in[handle])
+                throw new IllegalArgumentException("дескриптор " + handle + " уже в куче");
+            in[handle] = true;
+            keys[handle] = key;
+            child[handle] = sibling[handle] = prev[handle] = NONE;
+            root = root == NONE ? handle : meld(root, handle);
+            size++;
+        }
+
+        @Override
+        public int extractMin() {
+            if (size == 0)
+                throw new IllegalStateException("куча пуста");
+            int result = root;
+            root = combine(child[root]);
+            in[result] = false;
+            size--;
+            return result;
+        }
+
+        @Override
+        public void decreaseKey(int handle, long key) {
+            check(handle);
+            if (key > keys[handle])
+                throw new IllegalArgumentException("новый ключ " + key + " больше текущего " + keys[handle]);
+            keys[handle] = key;
+            if (handle != root) {
+                cut(handle);
+                root = meld(root, handle);
+            }
+        }
+
+        @Override
+        public void increaseKey(int handle, long key) {
+            check(handle);
+            if (key < keys[handle])
+                throw new IllegalArgumentException("новый ключ " + key + " меньше текущего " + keys[handle]);
+            remove(handle);
+            insert(handle, key);
+        }
+
+        @Override
+        public void remove(int handle) {
+            check(handle);
+            if (handle == root) {
+                extractMin();
+                return;
+            }
+            cut(handle);
+            int rest = combine(child[handle]);
+            if (rest != NONE) {
+                root = meld(root, rest);
+            }
+            in[handle] = false;
+            size--;
+        }
+
+        private void check(int handle) {
+            if (!in[handle])
+                throw new IllegalArgumentException("дескриптора " + handle + " нет в куче");
+        }
+
+        //отрезает поддерево handle (не корень) от родителя и братьев
+        private void cut(int handle) {
+            int p = prev[handle];
+            int s = sibling[handle];
+            if (child[p] == handle) {
+                child[p] = s;
+            } else {
+                sibling[p] = s;
+            }
+            if (s != NONE) {
+                prev[s] = p;
+            }
+            sibling[handle] = prev[handle] = NONE;
+        }
+
+        //слияние двух корней; меньший становится родителем
+        private int meld(int a, int b) {
+            if (keys[b] < keys[a]) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            int first = child[a];
+            sibling[b] = first;
+            if (first != NONE) {
+                prev[first] = b;
+            }
+            prev[b] = a;
+            child[a] = b;
+            sibling[a] = prev[a] = NONE;
+            return a;
+        }
+
+        //двухпроходное слияние списка братьев, начиная с first; возвращает новый корень
+        private int combine(int first) {
+            if (first == NONE)
+                return NONE;
+            int count = 0;
+            //первый проход: слева направо попарно
+            for (int a = first; a != NONE; ) {
+                int b = sibling[a];
+                int next = b == NONE ? NONE : sibling[b];
+                sibling[a] = prev[a] = NONE;
+                int merged = a;
+                if (b != NONE) {
+                    sibling[b] = prev[b] = NONE;
+                    merged = meld(a, b);
+                }
+                if (count == pairs.length) {
+                    pairs = Arrays.copyOf(pairs, count * 2);
+                }
+                pairs[count++] = merged;
+                a = next;
+            }
+            //второй проход: справа налево в одну кучу
+            int result = pairs[--count];
+            while (count > 0) {
+                result = meld(pairs[--count], result);
+            }
+            return result;
+        }
+    }
+
+    //граф в виде списков смежности подряд: ребра вершины v - [offsets[v], offsets[v+1])
+    static class Graph {
+        final int n;
+        final int[] offsets;
+        final int[] targets;
+        final int[] weights;
+
+        Graph(int n, int[] offsets, int[] targets, int[] weights) {
+            this.n = n;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+        }
+
+        //случайный ориентированный граф: m ребер с весами 1..maxWeight
+        static Graph random(int n, int m, int maxWeight, long seed) {
+            Random random = new Random(seed);
+            int[] from = new int[m];
+            int[] offsets = new int[n + 1];
+            for (int e = 0; e < m; e++) {
+                from[e] = random.nextInt(n);
+                offsets[from[e] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] fill = Arrays.copyOf(offsets, n);
+            int[] targets = new int[m];
+            int[] weights = new int[m];
+            for (int e = 0; e < m; e++) {
+                int slot = fill[from[e]]++;
+                targets[slot] = random.nextInt(n);
+                weights[slot] = 1 + random.nextInt(maxWeight);
+            }
+            return new Graph(n, offsets, targets, weights);
+        }
+    }
+
+    static final long INFINITY = Long.MAX_VALUE;
+
+    //кратчайшие расстояния от source, каждая вершина в куче не больше одного раза
+    static long[] dijkstra(Graph g, int source, IndexedHeap heap) {
+        long[] dist = new long[g.n];
+        Arrays.fill(dist, INFINITY);
+        dist[source] = 0;
+        heap.insert(source, 0);
+        while (!heap.isEmpty()) {
+            int v = heap.extractMin();
+            long dv = dist[v];
+            for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                int u = g.targets[e];
+                long du = dv + g.weights[e];
+                if (du < dist[u]) {
+                    if (dist[u] == INFINITY) {
+                        heap.insert(u, du);
+                    } else {
+                        heap.decreaseKey(u, du);
+                    }
+                    dist[u] = du;
+                }
+            }
+        }
+        return dist;
+    }
+
+    //то же с повторной вставкой: в куче C_HeapMaxFast лежит -(расстояние << VERTEX_BITS | вершина),
+    //устаревшие записи пропускаются при извлечении. peak[0] - наибольший размер кучи
+    static long[] dijkstraDuplicates(Graph g, int source, int[] peak) {
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, g.n - 1));
+        long mask = (1L << bits) - 1;
+        long[] dist = new long[g.n];
+        Arrays.fill(dist, INFINITY);
+        dist[source] = 0;
+        C_HeapMaxFast.MaxHeap heap = new C_HeapMaxFast.MaxHeap();
+        heap.insert(-((long) source));
+        while (!heap.isEmpty()) {
+            long top = -heap.extractMax();
+            int v = (int) (top & mask);
+            long dv = top >>> bits;
+            if (dv != dist[v]) continue; //устаревшая запись
+            for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                int u = g.targets[e];
+                long du = dv + g.weights[e];
+                if (du < dist[u]) {
+                    if (du > (Long.MAX_VALUE >>> bits))
+                        throw new ArithmeticException("расстояние " + du + " не помещается в ключ кучи");
+                    dist[u] = du;
+                    heap.insert(-(du << bits | u));
+                }
+            }
+            peak[0] = Math.max(peak[0], heap.size());
+        }
+        return dist;
+    }
+
+    public static void main(String[] args) {
+        int n = 1_000_000;
+        int m = 8_000_000;
+        Graph g = Graph.random(n, m, 1000, 1);
+        for (int round = 0; round < 3; round++) {
+            int[] peak = {0};
+            long startTime = System.currentTimeMillis();
+            long[] expected = dijkstraDuplicates(g, 0, peak);
+            long duplicates = System.currentTimeMillis() - startTime;
+
+            startTime = System.currentTimeMillis();
+            long[] dary = dijkstra(g, 0, new IndexedDaryHeap(4, n));
+            long daryTime = System.currentTimeMillis() - startTime;
+
+            startTime = System.currentTimeMillis();
+            long[] pairing = dijkstra(g, 0, new PairingHeap(n));
+            long pairingTime = System.currentTimeMillis() - startTime;
+
+            System.out.printf("повторная вставка: %d мс (куча до %d записей), 4-арная индексная: %d мс, "
+                            + "парная: %d мс (куча не больше %d), совпадает: %b\n",
+                    duplicates, peak[0], daryTime, pairingTime, n,
+                    Arrays.equals(expected, dary) && Arrays.equals(expected, pairing));
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package by.it.a_khmelev.lesson03;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.LongConsumer;
+
+// Lesson 3. C_Heap без упаковки и без Scanner.
+// Та же задача, что в C_HeapMax (Insert x / ExtractMax), но для трасс из 10^7 операций:
+//  - куча хранится в long[] (а не List<Long>), массив растет удвоением;
+//  - insertAll добавляет пачку значений: если пачка не меньше кучи,
+//    значения дописываются в конец и куча перестраивается снизу вверх за O(n);
+//  - команды разбираются прямо из байтов потока через один буфер: ни строк,
+//    ни split, ни Long.parseLong - на операцию не создается ни одного объекта.
+
+public class C_HeapMaxFast {
+
+    //размер буфера чтения
+    private static final int BUFFER = 1 << 16;
+
+    static class MaxHeap implements C_HeapVariants.Heap {
+        private long[] heap;
+        private int size;
+
+        MaxHeap() {
+            this(16);
+        }
+
+        MaxHeap(int capacity) {
+            heap = new long[Math.max(1, capacity)];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        long max() {
+            if (size == 0)
+                throw new IllegalStateException("куча пуста");
+            return heap[0];
+        }
+
+        @Override
+        public void insert(long value) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, heap.length * 2);
+            }
+            heap[size] = value;
+            siftUp(size++);
+        }
+
+        @Override
+        public long extractMax() {
+            if (size == 0)
+                throw new IllegalStateException("куча пуста");
+            long result = heap[0];
+            heap[0] = heap[--size];
+            siftDown(0);
+            return result;
+        }
+
+        //values[from..to) в кучу
+        void insertAll(long[] values, int from, int to) {
+            int count = to - from;
+            if (count < size) {
+                for (int i = from; i < to; i++) {
+                    insert(values[i]);
+                }
+                return;
+            }
+            if (size + count > heap.length) {
+                heap = Arrays.copyOf(heap, Math.max(size + count, heap.length * 2));
+            }
+            System.arraycopy(values, from, heap, size, count);
+            size += count;
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+
+        private void siftUp(int i) {
+            long value = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] >= value) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        private void siftDown(int i) {
+            long value = heap[i];
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1] > heap[child]) child++;
+                if (value >= heap[child]) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = value;
+        }
+    }
+
+    //как C_HeapMax.findMaxValue: наибольшее из извлеченных значений (0, если извлечений не было)
+    Long findMaxValue(InputStream stream) throws IOException {
+        long[] max = {0};
+        replay(stream, new MaxHeap(), value -> {
+            if (value > max[0]) max[0] = value;
+        });
+        return max[0];
+    }
+
+    //выполняет команды потока над heap; извлеченные значения передаются в extracted.
+    //ExtractMax на пустой куче пропускается. Возвращает число выполненных команд
+    static int replay(InputStream stream, C_HeapVariants.Heap heap, LongConsumer extracted) throws IOException {
+        Reader reader = new Reader(stream);
+        long count = reader.number();
+        for (int i = 0; i < count; i++) {
+            int first = reader.word();
+            if (first < 0)
+                throw new IllegalArgumentException("в потоке " + i + " команд вместо " + count);
+            if (first == 'i' || first == 'I') {
+                heap.insert(reader.number());
+            } else if (first == 'e' || first == 'E') {
+                if (!heap.isEmpty()) {
+                    extracted.accept(heap.extractMax());
+                }
+            } else {
+                throw new IllegalArgumentException("неизвестная команда " + (i + 1) + ": '" + (char) first + "...'");
+            }
+        }
+        return (int) count;
+    }
+
+    //побайтовый разбор потока через один буфер
+    static class Reader {
+        private final InputStream stream;
+        private final byte[] buffer = new byte[BUFFER];
+        private int position;
+        private int limit;
+
+        Reader(InputStream stream) {
+            this.stream = stream;
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = stream.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+
+        private int skipSpaces() throws IOException {
+            int b = read();
+            while (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                b = read();
+            }
+            return b;
+        }
+
+        //пропускает слово, возвращает его первый байт (-1 в конце потока)
+        int word() throws IOException {
+            int first = skipSpaces();
+            if (first < 0)
+                return first;
+            int b = read();
+            while (b > ' ') {
+                b = read();
+            }
+            return first;
+        }
+
+        long number() throws IOException {
+            int b = skipSpaces();
+            if (b < '0' || b > '9')
+                throw new IllegalArgumentException("ожидалось число, прочитано '" + (char) b + "'");
+            long value = 0;
+            while (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                b = read();
+            }
+            return value;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson03/heapData.txt");
+        C_HeapMaxFast instance = new C_HeapMaxFast();
+        System.out.println("MAX=" + instance.findMaxValue(stream));
+
+        //трасса из 10^7 команд: вставки и извлечения вперемешку
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Random random = new Random(1);
+        StringBuilder sb = new StringBuilder(n * 14);
+        sb.append(n).append('\n');
+        for (int i = 0; i < n; i++) {
+            if (random.nextInt(3) == 0) {
+                sb.append("ExtractMax\n");
+            } else {
+                sb.append("Insert ").append(random.nextInt(1_000_000_001)).append('\n');
+            }
+        }
+        byte[] trace = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        for (int round = 0; round < 5; round++) {
+            long collections = collections();
+            long startTime = System.currentTimeMillis();
+            long max = instance.findMaxValue(new ByteArrayInputStream(trace));
+            long finishTime = System.currentTimeMillis();
+            System.out.printf("%d команд: %d мс, MAX=%d, сборок мусора: %d\n",
+                    n, finishTime - startTime, max, collections() - collections);
+        }
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+}
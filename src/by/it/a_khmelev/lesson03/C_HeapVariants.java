@@ -0,0 +1,303 @@
+package by.it.a_khmelev.lesson03;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+// Lesson 3. C_Heap: варианты раскладки кучи в памяти.
+// На больших кучах время siftDown уходит в основном на промахи кэша:
+// в бинарной куче каждый уровень ниже ~10-го - новая строка кэша, а ниже ~20-го - новая страница.
+//  - DaryHeap: d-арная куча (d = 2, 4, 8). Дерево ниже в log2(d) раз, а d детей узла
+//    лежат подряд (для d=8 - одна строка кэша), зато на каждом уровне больше сравнений.
+//  - BHeap: B-куча (раскладка Кампа). Массив делится на страницы по 2^pageBits ячеек,
+//    каждая страница хранит целое поддерево высоты pageBits, а дети листьев страницы
+//    являются корнями дочерних страниц. Путь от корня к листу проходит через
+//    log(n)/pageBits страниц вместо log(n). pageBits=3 - страница в строку кэша,
+//    pageBits=9 - страница 4 КБ.
+// Все варианты реализуют Heap и выполняют трассы C_HeapMaxFast.replay.
+
+// Замер: main воспроизводит трассы Insert/ExtractMax (сначала n/2 вставок,
+// затем n/2 случайных команд, размер кучи ~n/2) и печатает ops/s для каждого варианта.
+// Параметры (системные свойства):
+//      -Dbench.sizes=1000000,10000000   длины трасс (10^8 требует ~1 ГБ кучи)
+//      -Dbench.iterations=3             повторов каждой трассы
+//      -Dbench.filter=bheap             запускать только варианты, имя которых содержит строку
+//      -Dbench.trace=heapData.txt       вместо сгенерированных трасс - файл в формате heapData.txt
+
+public class C_HeapVariants {
+
+    //max-куча из long
+    interface Heap {
+        void insert(long value);
+
+        long extractMax();
+
+        int size();
+
+        default boolean isEmpty() {
+            return size() == 0;
+        }
+    }
+
+    //d-арная куча, d - степень двойки
+    static class DaryHeap implements Heap {
+        private final int shift; //log2(d)
+        private final int d;
+        private long[] heap;
+        private int size;
+
+        DaryHeap(int d) {
+            this(d, 16);
+        }
+
+        DaryHeap(int d, int capacity) {
+            if (d < 2 || Integer.bitCount(d) != 1)
+                throw new IllegalArgumentException("арность " + d + " должна быть степенью двойки не меньше 2");
+            this.d = d;
+            this.shift = Integer.numberOfTrailingZeros(d);
+            heap = new long[Math.max(1, capacity)];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void insert(long value) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, heap.length * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> shift;
+                if (heap[parent] >= value) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        @Override
+        public long extractMax() {
+            if (size == 0)
+                throw new IllegalStateException("куча пуста");
+            long result = heap[0];
+            long value = heap[--size];
+            int i = 0;
+            while (true) {
+                int first = (i << shift) + 1;
+                if (first >= size) break;
+                int last = Math.min(first + d, size);
+                int child = first;
+                for (int c = first + 1; c < last; c++) {
+                    if (heap[c] > heap[child]) child = c;
+                }
+                if (value >= heap[child]) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = value;
+            return result;
+        }
+    }
+
+    //B-куча: элемент с номером i (в порядке заполнения) лежит на странице i / (2^pageBits - 1)
+    //в ячейке 1 + i % (2^pageBits - 1); внутри страницы дети ячейки j - ячейки 2j и 2j+1,
+    //дети листа j >= 2^(pageBits-1) - корни страниц page * 2^pageBits + 1 + 2(j - 2^(pageBits-1)) (+1).
+    //Ячейка 0 каждой страницы не используется
+    static class BHeap implements Heap {
+        private final int bits;
+        private final int mask;
+        private final int perPage; //узлов на странице
+        private final int half;    //первый лист страницы
+        private long[] slots;
+        private int size;
+
+        BHeap(int pageBits) {
+            if (pageBits < 2 || pageBits > 16)
+                throw new IllegalArgumentException("pageBits=" + pageBits + " вне 2..16");
+            bits = pageBits;
+            mask = (1 << bits) - 1;
+            perPage = mask;
+            half = 1 << (bits - 1);
+            slots = new long[4 << bits];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        //ячейка массива для элемента с номером i
+        private int slot(int i) {
+            int page = i / perPage;
+            return (page << bits) | (i - page * perPage + 1);
+        }
+
+        //номер элемента в ячейке slot
+        private int index(int slot) {
+            return (slot >>> bits) * perPage + (slot & mask) - 1;
+        }
+
+        @Override
+        public void insert(long value) {
+            int s = slot(size);
+            if (s >= slots.length) {
+                slots = Arrays.copyOf(slots, slots.length * 2);
+            }
+            size++;
+            while (s != 1) {
+                int j = s & mask;
+                int parent;
+                if (j > 1) {
+                    parent = s - j + (j >>> 1);
+                } else {
+                    int rest = (s >>> bits) - 1;
+                    parent = (rest >>> bits) << bits | (half + ((rest & mask) >>> 1));
+                }
+                if (slots[parent] >= value) break;
+                slots[s] = slots[parent];
+                s = parent;
+            }
+            slots[s] = value;
+        }
+
+        @Override
+        public long extractMax() {
+            if (size == 0)
+                throw new IllegalStateException("куча пуста");
+            long result = slots[1];
+            long value = slots[slot(--size)];
+            int s = 1;
+            while (true) {
+                int j = s & mask;
+                int left;
+                boolean hasRight;
+                int right;
+                if (j < half) {
+                    left = s + j;
+                    int i = index(left);
+                    if (i >= size) break;
+                    right = left + 1;
+                    hasRight = i + 1 < size;
+                } else {
+                    //номер дочерней страницы считается в long: у последних страниц он может не влезть в int
+                    long page = ((long) (s >>> bits) << bits) + 1 + 2 * (j - half);
+                    if (page * perPage >= size) break;
+                    left = (int) page << bits | 1;
+                    right = left + (1 << bits);
+                    hasRight = (page + 1) * perPage < size;
+                }
+                int child = hasRight && slots[right] > slots[left] ? right : left;
+                if (value >= slots[child]) break;
+                slots[s] = slots[child];
+                s = child;
+            }
+            slots[s] = value;
+            return result;
+        }
+    }
+
+    //вариант для замера
+    static class Variant {
+        final String name;
+        final Supplier<Heap> factory;
+
+        Variant(String name, Supplier<Heap> factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+    }
+
+    static List<Variant> variants() {
+        List<Variant> list = new ArrayList<>();
+        list.add(new Variant("binary", C_HeapMaxFast.MaxHeap::new));
+        for (int d : new int[]{2, 4, 8}) {
+            list.add(new Variant("dary-" + d, () -> new DaryHeap(d)));
+        }
+        for (int bits : new int[]{3, 6, 9}) {
+            list.add(new Variant("bheap-" + bits, () -> new BHeap(bits)));
+        }
+        return list;
+    }
+
+    //трасса: значение >= 0 - Insert, -1 - ExtractMax
+    static long[] trace(int n, long seed) {
+        Random random = new Random(seed);
+        long[] ops = new long[n];
+        for (int i = 0; i < n; i++) {
+            ops[i] = i < n / 2 || random.nextBoolean() ? random.nextInt(1_000_000_001) : -1;
+        }
+        return ops;
+    }
+
+    //трасса из файла в формате heapData.txt
+    static long[] trace(InputStream stream) throws IOException {
+        C_HeapMaxFast.Reader reader = new C_HeapMaxFast.Reader(stream);
+        long count = reader.number();
+        if (count > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException(count + " команд не помещаются в массив");
+        long[] ops = new long[(int) count];
+        for (int i = 0; i < count; i++) {
+            int first = reader.word();
+            if (first < 0)
+                throw new IllegalArgumentException("в потоке " + i + " команд вместо " + count);
+            ops[i] = first == 'i' || first == 'I' ? reader.number() : -1;
+        }
+        return ops;
+    }
+
+    //выполняет трассу; возвращает сумму извлеченных значений (чтобы работу нельзя было выбросить)
+    static long replay(long[] ops, Heap heap) {
+        long sum = 0;
+        for (long op : ops) {
+            if (op >= 0) {
+                heap.insert(op);
+            } else if (!heap.isEmpty()) {
+                sum += heap.extractMax();
+            }
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int iterations = Integer.getInteger("bench.iterations", 3);
+        String filter = System.getProperty("bench.filter", "");
+        String file = System.getProperty("bench.trace");
+        List<long[]> traces = new ArrayList<>();
+        if (file != null) {
+            try (InputStream stream = new FileInputStream(file)) {
+                traces.add(trace(stream));
+            }
+        } else {
+            for (String size : System.getProperty("bench.sizes", "1000000,10000000").split(",")) {
+                traces.add(trace(Integer.parseInt(size.trim()), 1));
+            }
+        }
+        System.out.printf("%-10s %12s %14s %10s\n", "variant", "ops", "ops/s", "ms");
+        for (long[] ops : traces) {
+            long expected = replay(ops, new C_HeapMaxFast.MaxHeap());
+            for (Variant variant : variants()) {
+                if (!variant.name.contains(filter)) continue;
+                //первый проход - прогрев
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i <= iterations; i++) {
+                    Heap heap = variant.factory.get();
+                    long startTime = System.nanoTime();
+                    long sum = replay(ops, heap);
+                    long nanos = System.nanoTime() - startTime;
+                    if (sum != expected)
+                        throw new IllegalStateException(variant.name + ": сумма " + sum + " вместо " + expected);
+                    if (i > 0) best = Math.min(best, nanos);
+                }
+                System.out.printf("%-10s %12d %14.0f %10d\n", variant.name, ops.length, ops.length * 1e9 / best, best / 1_000_000);
+            }
+        }
+    }
+}
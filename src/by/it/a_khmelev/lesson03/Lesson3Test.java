@@ -2,9 +2,20 @@ package by.it.a_khmelev.lesson03;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
 
 import static org.junit.Assert.assertTrue;
 
@@ -29,6 +40,180 @@ public class Lesson3Test {
         assertTrue("A failed", ok);
     }
 
+    @Test
+    public void A_Packed() throws Exception {
+        String root = System.getProperty("user.dir") + "/src/";
+        File f = new File(root + "by/it/a_khmelev/lesson03/dataHuffman.txt");
+        A_HuffmanPacked instance = new A_HuffmanPacked();
+        A_HuffmanPacked.Encoded result = instance.encode(f);
+        boolean ok=result.toBitString().equals("01001100100111");
+        assertTrue("A_Packed failed", ok);
+
+        //произвольные байты: упакованный поток совпадает с конкатенацией кодов, файл - с буфером
+        Random random = new Random(3);
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (random.nextGaussian() * 20);
+        }
+        result = instance.encode(data);
+        StringBuilder expected = new StringBuilder();
+        for (byte b : data) {
+            expected.append(A_HuffmanPacked.toBits(result.codes[b & 0xFF], result.lengths[b & 0xFF]));
+        }
+        assertTrue("A_Packed failed bits", result.toBitString().equals(expected.toString()));
+
+        File in = File.createTempFile("huffman", ".in");
+        File out = File.createTempFile("huffman", ".out");
+        try {
+            Files.write(in.toPath(), data);
+            try (FileChannel channel = FileChannel.open(out.toPath(), StandardOpenOption.WRITE)) {
+                assertTrue("A_Packed failed bitLength", instance.encode(in, channel) == result.bitLength);
+            }
+            ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(out.toPath()));
+            for (int b = 0; b < A_HuffmanPacked.ALPHABET; b++) {
+                assertTrue("A_Packed failed header", file.get() == result.lengths[b]);
+            }
+            assertTrue("A_Packed failed header bits", file.getLong() == result.bitLength);
+            assertTrue("A_Packed failed file", file.slice().equals(result.toByteBuffer()));
+        } finally {
+            in.delete();
+            out.delete();
+        }
+    }
+
+    @Test
+    public void A_Blocks() throws Exception {
+        Random random = new Random(4);
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (random.nextGaussian() * 20);
+        }
+        File in = File.createTempFile("huffman", ".in");
+        File out = File.createTempFile("huffman", ".blocks");
+        File back = File.createTempFile("huffman", ".back");
+        try {
+            Files.write(in.toPath(), data);
+            A_HuffmanBlocks instance = new A_HuffmanBlocks(3000);
+            A_HuffmanBlocks.Index index = instance.encode(in, out);
+            //гистограмма по блокам дает тот же код, что и по всему файлу
+            assertTrue("A_Blocks failed lengths", Arrays.equals(index.lengths, new A_HuffmanPacked().encode(data).lengths));
+            assertTrue("A_Blocks failed blocks", index.blocks() == 34 && index.compressedSize() == out.length());
+            instance.decode(out, back);
+            assertTrue("A_Blocks failed decode", Arrays.equals(Files.readAllBytes(back.toPath()), data));
+            try (FileChannel channel = FileChannel.open(out.toPath(), StandardOpenOption.READ)) {
+                A_HuffmanBlocks.Index read = A_HuffmanBlocks.readIndex(channel);
+                assertTrue("A_Blocks failed index", Arrays.equals(read.offsets, index.offsets));
+                byte[] block = A_HuffmanBlocks.decodeBlock(channel, read, 33);
+                assertTrue("A_Blocks failed last block", Arrays.equals(block, Arrays.copyOfRange(data, 99000, 100000)));
+                byte[] range = A_HuffmanBlocks.decodeRange(channel, read, 2500, 7000);
+                assertTrue("A_Blocks failed range", Arrays.equals(range, Arrays.copyOfRange(data, 2500, 9500)));
+            }
+
+            Files.write(in.toPath(), new byte[0]);
+            assertTrue("A_Blocks failed empty", instance.encode(in, out).blocks() == 0);
+            instance.decode(out, back);
+            assertTrue("A_Blocks failed empty decode", back.length() == 0);
+        } finally {
+            in.delete();
+            out.delete();
+            back.delete();
+        }
+    }
+
+    @Test
+    public void A_Limited() throws Exception {
+        //частоты Фибоначчи: без ограничения код самого редкого символа длиной 29
+        long[] frequencies = new long[A_HuffmanPacked.ALPHABET];
+        long a = 1, b = 1;
+        for (int symbol = 0; symbol < 30; symbol++) {
+            frequencies[symbol] = a;
+            long t = a + b;
+            a = b;
+            b = t;
+        }
+        assertTrue("A_Limited failed huffman", maxOf(A_HuffmanPacked.codeLengths(frequencies)) == 29);
+        for (int limit = 5; limit <= 29; limit++) {
+            int[] lengths = A_HuffmanLimited.codeLengths(frequencies, limit);
+            assertTrue("A_Limited failed length " + limit, maxOf(lengths) <= limit && kraft(lengths) == 1.0);
+            A_HuffmanLimited.Report report = A_HuffmanLimited.report(frequencies, limit);
+            assertTrue("A_Limited failed report " + limit, report.limitedBits >= report.optimalBits
+                    && report.limitedBits == A_HuffmanPacked.cost(frequencies, lengths));
+        }
+        //без срабатывания ограничения package-merge дает ту же длину текста, что и Хаффман
+        long[] random = new long[A_HuffmanPacked.ALPHABET];
+        Random r = new Random(5);
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < random.length; i++) {
+                random[i] = r.nextInt(4) == 0 ? 0 : 1 + r.nextInt(1000);
+            }
+            assertTrue("A_Limited failed optimal", A_HuffmanPacked.cost(random, A_HuffmanLimited.packageMerge(random, 40))
+                    == A_HuffmanPacked.cost(random, A_HuffmanPacked.codeLengths(random)));
+        }
+        //перебор для малых алфавитов
+        for (int round = 0; round < 200; round++) {
+            int n = 2 + r.nextInt(6);
+            long[] small = new long[n];
+            for (int i = 0; i < n; i++) {
+                small[i] = 1 + r.nextInt(r.nextBoolean() ? 10 : 10000);
+            }
+            int limit = 3 + r.nextInt(2);
+            long[] sorted = small.clone();
+            Arrays.sort(sorted);
+            assertTrue("A_Limited failed brute force " + Arrays.toString(small),
+                    A_HuffmanPacked.cost(small, A_HuffmanLimited.codeLengths(small, limit)) == brute(sorted, n - 1, 1, 1.0, limit));
+        }
+
+        //сжатие блоками с ограничением 8 бит на таких частотах
+        byte[] data = new byte[20000]; //сумма первых 20 чисел Фибоначчи - 17710
+        int position = 0;
+        for (int symbol = 0; symbol < 20; symbol++) {
+            for (long k = 0; k < frequencies[symbol]; k++) {
+                data[position++] = (byte) symbol;
+            }
+        }
+        data = Arrays.copyOf(data, position);
+        File in = File.createTempFile("huffman", ".in");
+        File out = File.createTempFile("huffman", ".blocks");
+        File back = File.createTempFile("huffman", ".back");
+        try {
+            Files.write(in.toPath(), data);
+            A_HuffmanBlocks instance = new A_HuffmanBlocks(1000, 8);
+            assertTrue("A_Limited failed blocks", maxOf(instance.encode(in, out).lengths) == 8);
+            instance.decode(out, back);
+            assertTrue("A_Limited failed decode", Arrays.equals(Files.readAllBytes(back.toPath()), data));
+        } finally {
+            in.delete();
+            out.delete();
+            back.delete();
+        }
+    }
+
+    private static int maxOf(int[] lengths) {
+        return Arrays.stream(lengths).max().getAsInt();
+    }
+
+    private static double kraft(int[] lengths) {
+        double sum = 0;
+        for (int length : lengths) {
+            if (length > 0) sum += Math.pow(2, -length);
+        }
+        return sum;
+    }
+
+    //минимальная длина текста: самым частым символам (с конца sorted) - не более длинные коды
+    private static long brute(long[] sorted, int i, int from, double free, int limit) {
+        if (i < 0)
+            return 0;
+        long best = Long.MAX_VALUE;
+        for (int length = from; length <= limit; length++) {
+            double rest = free - Math.pow(2, -length);
+            if (rest < -1e-12) continue;
+            long tail = brute(sorted, i - 1, length, rest, limit);
+            if (tail != Long.MAX_VALUE) best = Math.min(best, tail + sorted[i] * length);
+        }
+        return best;
+    }
+
     @Test
     public void B() throws Exception {
         String root = System.getProperty("user.dir") + "/src/";
@@ -38,6 +223,62 @@ public class Lesson3Test {
         boolean ok=result.equals("abacabad");
         assertTrue("B failed", ok);
     }
+    @Test
+    public void B_Table() throws Exception {
+        String root = System.getProperty("user.dir") + "/src/";
+        File f = new File(root + "by/it/a_khmelev/lesson03/encodeHuffman.txt");
+        B_HuffmanTable instance = new B_HuffmanTable();
+        String result = instance.decode(f);
+        boolean ok=result.equals("abacabad");
+        assertTrue("B_Table failed", ok);
+
+        //неканонический код из файла
+        int[] lengths = new int[256];
+        long[] codes = new long[256];
+        lengths['a'] = 1; codes['a'] = 1;
+        lengths['b'] = 2; codes['b'] = 1;
+        lengths['c'] = 3; codes['c'] = 1;
+        lengths['d'] = 3; codes['d'] = 0;
+        String text = "101001000";
+        ok=new String(new B_HuffmanTable.Table(lengths, codes).decode(B_HuffmanTable.pack(text), text.length())).equals("abcd");
+        assertTrue("B_Table failed non-canonical", ok);
+
+        //частоты Фибоначчи дают коды длиннее TABLE_BITS - работают вторичные таблицы
+        Random random = new Random(9);
+        byte[] data = new byte[200000];
+        long[] weights = new long[22];
+        weights[0] = 1; weights[1] = 1;
+        for (int i = 2; i < weights.length; i++) weights[i] = weights[i - 1] + weights[i - 2];
+        long total = 0;
+        for (long w : weights) total += w;
+        for (int i = 0; i < data.length; i++) {
+            long r = (long) (random.nextDouble() * total);
+            int symbol = 0;
+            while (r >= weights[symbol]) r -= weights[symbol++];
+            data[i] = (byte) (symbol * 11);
+        }
+        data[0] = 0; data[1] = 11; //самые редкие символы точно встречаются
+        A_HuffmanPacked.Encoded encoded = new A_HuffmanPacked().encode(data);
+        int max = 0;
+        for (int length : encoded.lengths) max = Math.max(max, length);
+        assertTrue("B_Table failed long codes", max > B_HuffmanTable.TABLE_BITS);
+        byte[] decoded = new B_HuffmanTable.Table(encoded.lengths, encoded.codes).decode(encoded.bits, encoded.bitLength);
+        assertTrue("B_Table failed round trip", Arrays.equals(decoded, data));
+
+        File in = File.createTempFile("huffman", ".in");
+        File out = File.createTempFile("huffman", ".out");
+        try {
+            Files.write(in.toPath(), data);
+            try (FileChannel channel = FileChannel.open(out.toPath(), StandardOpenOption.WRITE)) {
+                new A_HuffmanPacked().encode(in, channel);
+            }
+            assertTrue("B_Table failed packed file", Arrays.equals(instance.decodePacked(out), data));
+        } finally {
+            in.delete();
+            out.delete();
+        }
+    }
+
     @Test
     public void C() throws Exception {
         String root = System.getProperty("user.dir") + "/src/";
@@ -48,4 +289,162 @@ public class Lesson3Test {
         assertTrue("C failed", ok);
     }
 
+    @Test
+    public void C_Fast() throws Exception {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson03/heapData.txt");
+        C_HeapMaxFast instance = new C_HeapMaxFast();
+        Long res=instance.findMaxValue(stream);
+        boolean ok=(res==500);
+        assertTrue("C_Fast failed", ok);
+
+        //случайная трасса против PriorityQueue
+        Random random = new Random(6);
+        StringBuilder sb = new StringBuilder("100000\n");
+        PriorityQueue<Long> expected = new PriorityQueue<>(Collections.reverseOrder());
+        List<Long> extracted = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            if (random.nextInt(3) == 0) {
+                sb.append(random.nextBoolean() ? "ExtractMax\n" : "extractmax\r\n");
+                if (!expected.isEmpty()) extracted.add(expected.poll());
+            } else {
+                long x = random.nextInt(1_000_000_001);
+                sb.append("Insert ").append(x).append('\n');
+                expected.add(x);
+            }
+        }
+        List<Long> actual = new ArrayList<>();
+        C_HeapMaxFast.MaxHeap heap = new C_HeapMaxFast.MaxHeap(1);
+        C_HeapMaxFast.replay(new ByteArrayInputStream(sb.toString().getBytes()), heap, actual::add);
+        assertTrue("C_Fast failed replay", actual.equals(extracted) && heap.size() == expected.size());
+
+        //пачка больше кучи перестраивает ее целиком, меньше - вставляется по одному
+        long[] values = random.longs(5000, 0, 1000).toArray();
+        heap.insertAll(values, 0, values.length);
+        heap.insertAll(values, 10, 20);
+        for (long v : values) expected.add(v);
+        for (int i = 10; i < 20; i++) expected.add(values[i]);
+        while (!expected.isEmpty()) {
+            assertTrue("C_Fast failed insertAll", heap.extractMax() == expected.poll());
+        }
+        assertTrue("C_Fast failed empty", heap.isEmpty());
+    }
+
+    @Test
+    public void C_Variants() throws Exception {
+        String root = System.getProperty("user.dir") + "/src/";
+        long[] ops = C_HeapVariants.trace(new FileInputStream(root + "by/it/a_khmelev/lesson03/heapData.txt"));
+        assertTrue("C_Variants failed trace", Arrays.equals(ops, new long[]{200, 10, -1, 5, 500, -1}));
+        Random random = new Random(7);
+        for (C_HeapVariants.Variant variant : C_HeapVariants.variants()) {
+            List<Long> extracted = new ArrayList<>();
+            C_HeapMaxFast.replay(new FileInputStream(root + "by/it/a_khmelev/lesson03/heapData.txt"),
+                    variant.factory.get(), extracted::add);
+            assertTrue("C_Variants failed " + variant.name, extracted.equals(Arrays.asList(200L, 500L)));
+
+            //случайные команды против PriorityQueue, с частыми опустошениями кучи
+            C_HeapVariants.Heap heap = variant.factory.get();
+            PriorityQueue<Long> expected = new PriorityQueue<>(Collections.reverseOrder());
+            for (int i = 0; i < 200000; i++) {
+                if (random.nextInt(i % 50000 < 25000 ? 3 : 2) != 0) {
+                    long x = random.nextInt(1000);
+                    heap.insert(x);
+                    expected.add(x);
+                } else if (!expected.isEmpty()) {
+                    assertTrue("C_Variants failed " + variant.name + " at " + i, heap.extractMax() == expected.poll());
+                }
+                assertTrue("C_Variants failed size " + variant.name, heap.size() == expected.size());
+            }
+        }
+    }
+
+    @Test
+    public void C_Concurrent() throws Exception {
+        String root = System.getProperty("user.dir") + "/src/";
+        C_HeapConcurrent.Queue[] strict = {new C_HeapConcurrent.SkipList(), new C_HeapConcurrent.Locked(), new C_HeapConcurrent.MultiQueue(1)};
+        for (C_HeapConcurrent.Queue queue : strict) {
+            Long res = C_HeapConcurrent.findMaxValue(new FileInputStream(root + "by/it/a_khmelev/lesson03/heapData.txt"), queue);
+            assertTrue("C_Concurrent failed " + queue.getClass().getSimpleName(), res == 500);
+        }
+
+        //4 потока вставляют, затем 4 потока извлекают: ничего не теряется и не дублируется
+        int threads = 4;
+        int perThread = 20000;
+        C_HeapConcurrent.Queue[] queues = {new C_HeapConcurrent.SkipList(), new C_HeapConcurrent.Locked(), new C_HeapConcurrent.MultiQueue(threads, 2)};
+        for (C_HeapConcurrent.Queue queue : queues) {
+            long[][] inserts = new long[threads][perThread];
+            for (int t = 0; t < threads; t++) {
+                for (int i = 0; i < perThread; i++) {
+                    inserts[t][i] = (long) i * threads + t;
+                }
+            }
+            C_HeapConcurrent.run(queue, inserts);
+            long[][] got = new long[threads][perThread];
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long[] out = got[t];
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) out[i] = queue.extractMax();
+                });
+                thread.start();
+                workers.add(thread);
+            }
+            for (Thread thread : workers) thread.join();
+            long[] all = Arrays.stream(got).flatMapToLong(Arrays::stream).sorted().toArray();
+            for (int i = 0; i < all.length; i++) {
+                assertTrue("C_Concurrent failed values " + queue.getClass().getSimpleName(), all[i] == i);
+            }
+            assertTrue("C_Concurrent failed empty", queue.extractMax() == C_HeapConcurrent.EMPTY);
+        }
+    }
+
+    @Test
+    public void C_Indexed() throws Exception {
+        int n = 300;
+        Random random = new Random(8);
+        C_HeapIndexed.IndexedHeap[] heaps = {new C_HeapIndexed.IndexedDaryHeap(2, n),
+                new C_HeapIndexed.IndexedDaryHeap(4, n), new C_HeapIndexed.PairingHeap(n)};
+        for (C_HeapIndexed.IndexedHeap heap : heaps) {
+            String name = heap.getClass().getSimpleName();
+            long[] keys = new long[n];
+            boolean[] in = new boolean[n];
+            int size = 0;
+            for (int step = 0; step < 200000; step++) {
+                int h = random.nextInt(n);
+                int op = random.nextInt(5);
+                if (!in[h]) {
+                    keys[h] = random.nextInt(1000);
+                    heap.insert(h, keys[h]);
+                    in[h] = true;
+                    size++;
+                } else if (op == 0) {
+                    keys[h] -= random.nextInt(100);
+                    heap.decreaseKey(h, keys[h]);
+                } else if (op == 1) {
+                    keys[h] += random.nextInt(100);
+                    heap.increaseKey(h, keys[h]);
+                } else if (op == 2) {
+                    heap.remove(h);
+                    in[h] = false;
+                    size--;
+                } else {
+                    long min = Long.MAX_VALUE;
+                    for (int i = 0; i < n; i++) {
+                        if (in[i]) min = Math.min(min, keys[i]);
+                    }
+                    int got = heap.extractMin();
+                    assertTrue("C_Indexed failed extractMin " + name, in[got] && keys[got] == min);
+                    in[got] = false;
+                    size--;
+                }
+                assertTrue("C_Indexed failed size " + name, heap.size() == size && heap.contains(h) == in[h]);
+                assertTrue("C_Indexed failed key " + name, !in[h] || heap.key(h) == keys[h]);
+            }
+        }
+
+        C_HeapIndexed.Graph g = C_HeapIndexed.Graph.random(2000, 10000, 50, 9);
+        long[] expected = C_HeapIndexed.dijkstraDuplicates(g, 0, new int[1]);
+        assertTrue("C_Indexed failed dijkstra dary", Arrays.equals(expected, C_HeapIndexed.dijkstra(g, 0, new C_HeapIndexed.IndexedDaryHeap(4, 2000))));
+        assertTrue("C_Indexed failed dijkstra pairing", Arrays.equals(expected, C_HeapIndexed.dijkstra(g, 0, new C_HeapIndexed.PairingHeap(2000))));
+    }
 }
@@ -0,0 +1,210 @@
+package by.it.a_khmelev.lesson04;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StreamTokenizer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/*
+Задача A_BinaryFind для 10^7-10^8 запросов к массивам из 10^6-10^8 элементов.
+
+Обычный бинарный поиск на больших массивах упирается в память: каждый шаг - промах кэша
+по адресу, который зависит от предыдущего сравнения, а ветвление на сравнении
+предсказывается в половине случаев.
+
+Здесь отсортированный массив перекладывается в порядке Эйтцингера (обход в ширину
+неявного дерева поиска): корень в ячейке 1, дети ячейки k - ячейки 2k и 2k+1.
+Первые уровни дерева лежат рядом и всегда в кэше, а шаг поиска без ветвления:
+    k = 2k + (b[k] < x)
+Команды предвыборки в Java нет, поэтому одиночный поиск на каждом шаге читает
+ячейку на 4 уровня ниже (16k): это чтение не зависит от сравнения и подтягивает
+строку кэша заранее. Все запросы делают одинаковое число шагов (число уровней),
+поэтому пакет запросов идет группами по GROUP в ногу: загрузки разных запросов
+одного уровня независимы и процессор выполняет их одновременно.
+После спуска ответ - последний предок, в котором поиск ушел влево:
+    k >>= (число младших единиц k) + 1
+Отсутствующие узлы последнего уровня (k > n) считаются меньше любого запроса.
+Для каждой ячейки хранится исходный номер элемента (с 1), пакеты запросов
+обрабатываются параллельно кусками по CHUNK.
+*/
+
+public class A_BinaryFindEytzinger {
+
+    //сколько запросов спускаются в ногу
+    private static final int GROUP = 8;
+    //запросов на одну параллельную задачу
+    private static final int CHUNK = 1 << 14;
+
+    private final int n;
+    private final int depth;    //число уровней дерева
+    private final int[] tree;   //значения в порядке Эйтцингера, tree[0] не используется
+    private final int[] index;  //исходный номер (с 1) значения tree[k]
+    private final int mask;
+    //сюда складываются упреждающие чтения, чтобы JIT их не выбросил
+    private int sink;
+
+    A_BinaryFindEytzinger(int[] sorted) {
+        n = sorted.length;
+        depth = 32 - Integer.numberOfLeadingZeros(n);
+        tree = new int[1 << depth];
+        index = new int[1 << depth];
+        mask = tree.length - 1;
+        //симметричный обход дерева кладет значения по возрастанию; стек вместо рекурсии
+        int[] stack = new int[depth + 1];
+        int top = 0;
+        int k = 1;
+        int i = 0;
+        while (top > 0 || k <= n) {
+            if (k <= n) {
+                stack[top++] = k;
+                k = 2 * k;
+            } else {
+                k = stack[--top];
+                tree[k] = sorted[i];
+                index[k] = ++i;
+                k = 2 * k + 1;
+            }
+        }
+    }
+
+    //номер (с 1) значения x в исходном массиве или -1
+    int find(int x) {
+        int k = 1;
+        int touched = 0;
+        for (int level = 0; level < depth; level++) {
+            //чтение на 4 уровня вперед: 16 потомков k лежат в одной-двух строках кэша
+            touched += tree[(k << 4) & mask];
+            k = 2 * k + (tree[k] < x | k > n ? 1 : 0);
+        }
+        sink = touched;
+        return answer(k, x);
+    }
+
+    //ответы на пакет запросов, куски пакета обрабатываются параллельно
+    int[] find(int[] queries) {
+        int[] result = new int[queries.length];
+        int chunks = (queries.length + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(c ->
+                find(queries, result, c * CHUNK, Math.min(queries.length, (c + 1) * CHUNK)));
+        return result;
+    }
+
+    //queries[from..to) группами по GROUP запросов в ногу
+    private void find(int[] queries, int[] result, int from, int to) {
+        int[] k = new int[GROUP];
+        int g = from;
+        for (; g + GROUP <= to; g += GROUP) {
+            Arrays.fill(k, 1);
+            for (int level = 0; level < depth; level++) {
+                for (int j = 0; j < GROUP; j++) {
+                    int kk = k[j];
+                    k[j] = 2 * kk + (tree[kk] < queries[g + j] | kk > n ? 1 : 0);
+                }
+            }
+            for (int j = 0; j < GROUP; j++) {
+                result[g + j] = answer(k[j], queries[g + j]);
+            }
+        }
+        for (; g < to; g++) {
+            result[g] = find(queries[g]);
+        }
+    }
+
+    private int answer(int k, int x) {
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k != 0 && tree[k] == x ? index[k] : -1;
+    }
+
+    //формат A_BinaryFind
+    int[] findIndex(InputStream stream) throws IOException {
+        StreamTokenizer tokenizer = new StreamTokenizer(new InputStreamReader(new BufferedInputStream(stream)));
+        int n = nextInt(tokenizer);
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = nextInt(tokenizer);
+        }
+        int k = nextInt(tokenizer);
+        int[] queries = new int[k];
+        for (int i = 0; i < k; i++) {
+            queries[i] = nextInt(tokenizer);
+        }
+        return new A_BinaryFindEytzinger(a).find(queries);
+    }
+
+    private static int nextInt(StreamTokenizer tokenizer) throws IOException {
+        if (tokenizer.nextToken() != StreamTokenizer.TT_NUMBER)
+            throw new IllegalArgumentException("ожидалось число в строке " + tokenizer.lineno());
+        return (int) tokenizer.nval;
+    }
+
+    //обычный бинарный поиск с ветвлением - для сравнения
+    static int findClassic(int[] a, int x) {
+        int lo = 0;
+        int hi = a.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < x) {
+                lo = mid + 1;
+            } else if (a[mid] > x) {
+                hi = mid - 1;
+            } else {
+                return mid + 1;
+            }
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson04/dataA.txt");
+        for (int index : new A_BinaryFindEytzinger(new int[0]).findIndex(stream)) {
+            System.out.print(index + " ");
+        }
+        System.out.println();
+
+        //замер: n различных возрастающих чисел, q запросов (половина - промахи)
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int q = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        Random random = new Random(1);
+        int[] a = new int[n];
+        for (int i = 0, value = 0; i < n; i++) {
+            value += 1 + random.nextInt(100);
+            a[i] = value;
+        }
+        int[] queries = new int[q];
+        for (int i = 0; i < q; i++) {
+            queries[i] = random.nextBoolean() ? a[random.nextInt(n)] : random.nextInt(a[n - 1] + 2);
+        }
+        long startTime = System.currentTimeMillis();
+        A_BinaryFindEytzinger index = new A_BinaryFindEytzinger(a);
+        long buildTime = System.currentTimeMillis() - startTime;
+        for (int round = 0; round < 3; round++) {
+            startTime = System.currentTimeMillis();
+            int[] classic = new int[q];
+            for (int i = 0; i < q; i++) {
+                classic[i] = findClassic(a, queries[i]);
+            }
+            long classicTime = System.currentTimeMillis() - startTime;
+
+            startTime = System.currentTimeMillis();
+            int[] single = new int[q];
+            for (int i = 0; i < q; i++) {
+                single[i] = index.find(queries[i]);
+            }
+            long singleTime = System.currentTimeMillis() - startTime;
+
+            startTime = System.currentTimeMillis();
+            int[] batch = index.find(queries);
+            long batchTime = System.currentTimeMillis() - startTime;
+            System.out.printf("n=%d q=%d: построение %d мс, бинарный поиск %d мс, Эйтцингер %d мс, "
+                            + "Эйтцингер пакетом %d мс, совпадает: %b\n",
+                    n, q, buildTime, classicTime, singleTime, batchTime,
+                    Arrays.equals(classic, single) && Arrays.equals(classic, batch));
+        }
+    }
+}
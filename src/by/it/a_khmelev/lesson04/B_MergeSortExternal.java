@@ -0,0 +1,365 @@
+package by.it.a_khmelev.lesson04;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Внешняя сортировка слиянием для массивов, которые не помещаются в память (десятки ГБ).
+
+Формат файлов (вход и выход одинаковы): 8 байт - число элементов n,
+затем n чисел int по 4 байта (big-endian, как пишут DataOutputStream и ByteBuffer).
+load читает такой файл в int[] для остальных задач lesson04
+(A_BinaryFindEytzinger, B_MergeSortParallel, C_GetInversionsParallel).
+
+1) Отрезки: вход делится на куски по runLength чисел, каждый читается в int[],
+   сортируется B_MergeSortParallel и сбрасывается во временный файл.
+   Куски обрабатывают ровно threads рабочих потоков, у каждого своя доля бюджета
+   memory / threads и один прямой буфер чтения-записи runBuffer; кусок вместе
+   с буфером сортировки занимает 8 байт на число, поэтому
+   runLength = (memory / threads - runBuffer) / 8. Внутри куска сортировка идет
+   в отдельном ForkJoinPool, так что ожидание подзадач не берет новые куски.
+2) Слияние: k отрезков сливаются через min-кучу из long (значение << 32 | номер отрезка),
+   у каждого отрезка свой прямой (direct) ByteBuffer, чтение и запись через FileChannel.
+   Буфер отрезка не меньше MIN_BUFFER; если отрезков больше, чем помещается буферов
+   в память, они сливаются в несколько проходов группами по fanIn.
+Все буферы (куски, буфер сортировки, буферы слияния) укладываются в бюджет memory.
+*/
+
+public class B_MergeSortExternal {
+
+    static final int HEADER = Long.BYTES;
+    //наименьший буфер чтения одного отрезка
+    static final int MIN_BUFFER = 1 << 16;
+    //буфер записи и обычного чтения
+    private static final int IO_BUFFER = 8 << 20;
+
+    private final long memory;
+    private final int threads;
+    private final File tempDirectory;
+    private final int ioBuffer;  //буфер записи при слиянии: IO_BUFFER, но не больше четверти бюджета
+    private final int runBuffer; //буфер рабочего потока: ioBuffer, но не больше четверти его доли
+    private final long runLength;
+
+    B_MergeSortExternal() {
+        this(Runtime.getRuntime().maxMemory() / 4, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    //memory - сколько байт можно занять под данные; tempDirectory - null для системного каталога
+    B_MergeSortExternal(long memory, int threads, File tempDirectory) {
+        if (threads < 1)
+            throw new IllegalArgumentException("нужен хотя бы один поток, а не " + threads);
+        if (memory < 4L * MIN_BUFFER)
+            throw new IllegalArgumentException("бюджет " + memory + " байт меньше " + 4 * MIN_BUFFER);
+        if (memory / threads < MIN_BUFFER)
+            throw new IllegalArgumentException("на поток приходится " + memory / threads
+                    + " байт бюджета, нужно не меньше " + MIN_BUFFER);
+        this.memory = memory;
+        this.ioBuffer = (int) Math.min(IO_BUFFER, memory / 4) & ~3;
+        long share = memory / threads;
+        this.runBuffer = (int) Math.min(ioBuffer, share / 4) & ~3;
+        this.runLength = Math.min((share - runBuffer) / 8, Integer.MAX_VALUE - 8);
+        this.threads = threads;
+        this.tempDirectory = tempDirectory;
+    }
+
+    //сортирует input в output; возвращает число отрезков первого прохода
+    int sort(File input, File output) throws IOException {
+        List<File> runs = new ArrayList<>();
+        try (FileChannel in = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+            long n = readHeader(in);
+            int count = (int) ((n + runLength - 1) / runLength);
+            for (int r = 0; r < count; r++) {
+                runs.add(File.createTempFile("run", ".bin", tempDirectory));
+            }
+            AtomicInteger next = new AtomicInteger();
+            ForkJoinPool sortPool = new ForkJoinPool(threads);
+            ExecutorService workers = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int w = 0; w < Math.min(threads, count); w++) {
+                    futures.add(workers.submit(() -> {
+                        ByteBuffer buffer = ByteBuffer.allocateDirect(runBuffer);
+                        for (int r; (r = next.getAndIncrement()) < count; ) {
+                            long from = r * runLength;
+                            int[] run = new int[(int) Math.min(runLength, n - from)];
+                            read(in, HEADER + from * Integer.BYTES, run, buffer);
+                            B_MergeSortParallel.sort(run, sortPool);
+                            try (FileChannel out = FileChannel.open(runs.get(r).toPath(), StandardOpenOption.WRITE)) {
+                                write(out, 0, run, buffer);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("сортировка прервана", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new IOException(e.getCause());
+            } finally {
+                workers.shutdownNow();
+                sortPool.shutdown();
+            }
+            int first = runs.size();
+            merge(runs, output, n);
+            return first;
+        } finally {
+            for (File run : runs) {
+                run.delete();
+            }
+        }
+    }
+
+    //слияние отрезков в output; при большом числе отрезков - в несколько проходов
+    private void merge(List<File> runs, File output, long n) throws IOException {
+        int fanIn = (int) Math.max(2, Math.min(Integer.MAX_VALUE, (memory - ioBuffer) / MIN_BUFFER));
+        while (runs.size() > fanIn) {
+            List<File> next = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += fanIn) {
+                List<File> group = runs.subList(from, Math.min(runs.size(), from + fanIn));
+                File merged = File.createTempFile("run", ".bin", tempDirectory);
+                try (FileChannel out = FileChannel.open(merged.toPath(), StandardOpenOption.WRITE)) {
+                    mergeGroup(group, out, 0);
+                }
+                for (File run : group) {
+                    run.delete();
+                }
+                next.add(merged);
+            }
+            runs.clear();
+            runs.addAll(next);
+        }
+        try (FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putLong(n);
+            header.flip();
+            writeFully(out, header, 0);
+            mergeGroup(runs, out, HEADER);
+        }
+    }
+
+    //k-путевое слияние файлов отрезков в out начиная с position
+    private void mergeGroup(List<File> group, FileChannel out, long position) throws IOException {
+        int k = group.size();
+        int bufferBytes = (int) Math.max(MIN_BUFFER, Math.min(IO_BUFFER, (memory - ioBuffer) / Math.max(1, k)) & ~3L);
+        FileChannel[] channels = new FileChannel[k];
+        ByteBuffer[] buffers = new ByteBuffer[k];
+        long[] positions = new long[k];
+        long[] heap = new long[k];
+        int size = 0;
+        try {
+            for (int r = 0; r < k; r++) {
+                channels[r] = FileChannel.open(group.get(r).toPath(), StandardOpenOption.READ);
+                buffers[r] = ByteBuffer.allocateDirect(bufferBytes);
+                buffers[r].limit(0);
+                if (refill(channels[r], buffers[r], positions, r)) {
+                    heap[size++] = (long) buffers[r].getInt() << 32 | r;
+                }
+            }
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(heap, i, size);
+            }
+            ByteBuffer output = ByteBuffer.allocateDirect(ioBuffer);
+            while (size > 0) {
+                long top = heap[0];
+                int r = (int) top;
+                if (!output.hasRemaining()) {
+                    output.flip();
+                    position += writeFully(out, output, position);
+                    output.clear();
+                }
+                output.putInt((int) (top >> 32));
+                ByteBuffer buffer = buffers[r];
+                if (buffer.hasRemaining() || refill(channels[r], buffer, positions, r)) {
+                    heap[0] = (long) buffer.getInt() << 32 | r;
+                } else {
+                    heap[0] = heap[--size];
+                }
+                siftDown(heap, 0, size);
+            }
+            output.flip();
+            writeFully(out, output, position);
+        } finally {
+            for (FileChannel channel : channels) {
+                if (channel != null) channel.close();
+            }
+        }
+    }
+
+    //следующая порция отрезка r; false - отрезок кончился
+    private static boolean refill(FileChannel channel, ByteBuffer buffer, long[] positions, int r) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, positions[r]);
+            if (read < 0) break;
+            positions[r] += read;
+        }
+        buffer.flip();
+        return buffer.hasRemaining();
+    }
+
+    //min-куча; в младших 32 битах номер отрезка (неотрицательный), поэтому порядок long = порядок значений
+    private static void siftDown(long[] heap, int i, int size) {
+        long value = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (value <= heap[child]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+
+    private static long readHeader(FileChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        readFully(in, header, 0);
+        long n = header.getLong();
+        if (n < 0 || HEADER + n * Integer.BYTES != in.size())
+            throw new IllegalArgumentException("в заголовке " + n + " чисел, а размер файла " + in.size() + " байт");
+        return n;
+    }
+
+    //длина куска первого прохода
+    long runLength() {
+        return runLength;
+    }
+
+    //читает values.length чисел начиная с байта position через buffer
+    private static void read(FileChannel in, long position, int[] values, ByteBuffer buffer) throws IOException {
+        for (int done = 0; done < values.length; ) {
+            int count = Math.min(values.length - done, buffer.capacity() / Integer.BYTES);
+            buffer.clear().limit(count * Integer.BYTES);
+            readFully(in, buffer, position + (long) done * Integer.BYTES);
+            buffer.asIntBuffer().get(values, done, count);
+            done += count;
+        }
+    }
+
+    private static void write(FileChannel out, long position, int[] values, ByteBuffer buffer) throws IOException {
+        for (int done = 0; done < values.length; ) {
+            int count = Math.min(values.length - done, buffer.capacity() / Integer.BYTES);
+            buffer.clear();
+            buffer.asIntBuffer().put(values, done, count);
+            buffer.limit(count * Integer.BYTES);
+            position += writeFully(out, buffer, position);
+            done += count;
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer, position);
+            if (read < 0)
+                throw new IllegalArgumentException("файл обрывается на позиции " + position);
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    private static long writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += out.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    //массив в файл нашего формата
+    static void save(File file, int[] values) throws IOException {
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putLong(values.length);
+            header.flip();
+            writeFully(out, header, 0);
+            write(out, HEADER, values, ByteBuffer.allocateDirect(IO_BUFFER));
+        }
+    }
+
+    //файл нашего формата в массив (до 2^31 чисел)
+    static int[] load(File file) throws IOException {
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long n = readHeader(in);
+            if (n > Integer.MAX_VALUE - 8)
+                throw new IllegalArgumentException(n + " чисел не помещаются в массив");
+            int[] values = new int[(int) n];
+            read(in, HEADER, values, ByteBuffer.allocateDirect(IO_BUFFER));
+            return values;
+        }
+    }
+
+    //замер: n чисел (аргумент, по умолчанию 10^8 = 400 МБ) при бюджете memory МБ (второй аргумент, 64)
+    public static void main(String[] args) throws IOException {
+        long n = args.length > 0 ? Long.parseLong(args[0]) : 100_000_000;
+        long memory = (args.length > 1 ? Long.parseLong(args[1]) : 64) << 20;
+        File input = File.createTempFile("external", ".in");
+        File output = File.createTempFile("external", ".out");
+        try {
+            long startTime = System.currentTimeMillis();
+            Random random = new Random(1);
+            try (FileChannel out = FileChannel.open(input.toPath(), StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER).putLong(n);
+                header.flip();
+                writeFully(out, header, 0);
+                int[] chunk = new int[1 << 20];
+                ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER);
+                for (long done = 0; done < n; done += chunk.length) {
+                    int count = (int) Math.min(chunk.length, n - done);
+                    for (int i = 0; i < count; i++) chunk[i] = random.nextInt();
+                    write(out, HEADER + done * Integer.BYTES, count == chunk.length ? chunk : Arrays.copyOf(chunk, count), buffer);
+                }
+            }
+            System.out.printf("создан файл %d МБ: %d мс\n", input.length() >> 20, System.currentTimeMillis() - startTime);
+
+            B_MergeSortExternal sorter = new B_MergeSortExternal(memory, Runtime.getRuntime().availableProcessors(), null);
+            startTime = System.currentTimeMillis();
+            int runs = sorter.sort(input, output);
+            long sortTime = System.currentTimeMillis() - startTime;
+
+            //проверка упорядоченности потоковым чтением
+            boolean ok = output.length() == input.length();
+            try (FileChannel in = FileChannel.open(output.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER);
+                long position = HEADER;
+                int previous = Integer.MIN_VALUE;
+                while (ok && position < in.size()) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), in.size() - position));
+                    readFully(in, buffer, position);
+                    position += buffer.remaining();
+                    while (buffer.hasRemaining()) {
+                        int value = buffer.getInt();
+                        ok &= value >= previous;
+                        previous = value;
+                    }
+                }
+            }
+            System.out.printf("n=%d, память %d МБ: %d отрезков, %d мс, упорядочено: %b\n",
+                    n, memory >> 20, runs, sortTime, ok);
+        } finally {
+            input.delete();
+            output.delete();
+        }
+    }
+}
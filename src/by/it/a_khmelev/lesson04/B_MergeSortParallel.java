@@ -0,0 +1,227 @@
+package by.it.a_khmelev.lesson04;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StreamTokenizer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+Сортировка слиянием B_MergeSort для массивов до 10^8 элементов на нескольких ядрах.
+
+1) Буфер один на всю сортировку. Уровни рекурсии по очереди сливают из массива
+   в буфер и из буфера в массив ("пинг-понг"): половины, отсортированные в одном
+   массиве, сливаются в другой, и копировать обратно ничего не нужно.
+2) Отрезки не длиннее CUTOFF сортируются вставками.
+3) Половины сортируются параллельно (ForkJoinPool), пока отрезок длиннее SEQUENTIAL.
+4) Слияние тоже параллельное: берется середина большей из двух частей, ее место
+   в меньшей находится бинарным поиском, элемент сразу ставится на свое место
+   в результате, а левые и правые остатки сливаются независимо.
+*/
+
+public class B_MergeSortParallel {
+
+    static final int CUTOFF = 32;
+    static final int SEQUENTIAL = 1 << 13;
+    static final int MERGE_SEQUENTIAL = 1 << 13;
+
+    //формат B_MergeSort
+    int[] getMergeSort(InputStream stream) throws IOException {
+        StreamTokenizer tokenizer = new StreamTokenizer(new InputStreamReader(new BufferedInputStream(stream)));
+        tokenizer.nextToken();
+        int n = (int) tokenizer.nval;
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (tokenizer.nextToken() != StreamTokenizer.TT_NUMBER)
+                throw new IllegalArgumentException("в потоке " + i + " чисел вместо " + n);
+            a[i] = (int) tokenizer.nval;
+        }
+        sort(a);
+        return a;
+    }
+
+    static void sort(int[] a) {
+        sort(a, ForkJoinPool.commonPool());
+    }
+
+    static void sort(int[] a, ForkJoinPool pool) {
+        if (a.length <= CUTOFF) {
+            insertionSort(a, 0, a.length);
+            return;
+        }
+        pool.invoke(new Sorter(a, new int[a.length], 0, a.length, false));
+    }
+
+    //сортирует a[lo..hi); результат в a (intoBuffer=false) или в b (intoBuffer=true)
+    private static class Sorter extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a;
+        private final int[] b;
+        private final int lo;
+        private final int hi;
+        private final boolean intoBuffer;
+
+        Sorter(int[] a, int[] b, int lo, int hi, boolean intoBuffer) {
+            this.a = a;
+            this.b = b;
+            this.lo = lo;
+            this.hi = hi;
+            this.intoBuffer = intoBuffer;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= SEQUENTIAL) {
+                sequential(a, b, lo, hi, intoBuffer);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Sorter(a, b, lo, mid, !intoBuffer), new Sorter(a, b, mid, hi, !intoBuffer));
+            //половины лежат в другом массиве, чем нужен результат
+            int[] src = intoBuffer ? a : b;
+            int[] dst = intoBuffer ? b : a;
+            new Merger(src, lo, mid, mid, hi, dst, lo).compute();
+        }
+    }
+
+    private static void sequential(int[] a, int[] b, int lo, int hi, boolean intoBuffer) {
+        if (hi - lo <= CUTOFF) {
+            insertionSort(a, lo, hi);
+            if (intoBuffer) {
+                System.arraycopy(a, lo, b, lo, hi - lo);
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        sequential(a, b, lo, mid, !intoBuffer);
+        sequential(a, b, mid, hi, !intoBuffer);
+        if (intoBuffer) {
+            merge(a, lo, mid, mid, hi, b, lo);
+        } else {
+            merge(b, lo, mid, mid, hi, a, lo);
+        }
+    }
+
+    //слияние src[lo1..hi1) и src[lo2..hi2) в dst начиная с out
+    private static class Merger extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src;
+        private final int lo1, hi1, lo2, hi2;
+        private final int[] dst;
+        private final int out;
+
+        Merger(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int out) {
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dst = dst;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = hi1 - lo1;
+            int n2 = hi2 - lo2;
+            if (n1 + n2 <= MERGE_SEQUENTIAL) {
+                merge(src, lo1, hi1, lo2, hi2, dst, out);
+                return;
+            }
+            //делится большая часть; для int порядок равных элементов не важен
+            if (n1 < n2) {
+                new Merger(src, lo2, hi2, lo1, hi1, dst, out).compute();
+                return;
+            }
+            int m = (lo1 + hi1) >>> 1;
+            int value = src[m];
+            int s = lowerBound(src, lo2, hi2, value);
+            int position = out + (m - lo1) + (s - lo2);
+            dst[position] = value;
+            invokeAll(new Merger(src, lo1, m, lo2, s, dst, out),
+                    new Merger(src, m + 1, hi1, s, hi2, dst, position + 1));
+        }
+    }
+
+    private static void merge(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int out) {
+        int i = lo1;
+        int j = lo2;
+        while (i < hi1 && j < hi2) {
+            dst[out++] = src[j] < src[i] ? src[j++] : src[i++];
+        }
+        System.arraycopy(src, i, dst, out, hi1 - i);
+        System.arraycopy(src, j, dst, out + hi1 - i, hi2 - j);
+    }
+
+    //первая позиция в a[lo..hi) со значением >= value
+    private static int lowerBound(int[] a, int lo, int hi, int value) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static void insertionSort(int[] a, int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            int value = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > value) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = value;
+        }
+    }
+
+    //замер против Arrays.sort и Arrays.parallelSort; размер массива - аргумент (по умолчанию 10^7)
+    public static void main(String[] args) throws IOException {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson04/dataB.txt");
+        for (int value : new B_MergeSortParallel().getMergeSort(stream)) {
+            System.out.print(value + " ");
+        }
+        System.out.println();
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int[] source = new Random(1).ints(n, 0, 1_000_000_001).toArray();
+        int[] expected = source.clone();
+        long startTime = System.currentTimeMillis();
+        Arrays.sort(expected);
+        System.out.printf("n=%d  Arrays.sort: %d мс\n", n, System.currentTimeMillis() - startTime);
+
+        int[] a = source.clone();
+        startTime = System.currentTimeMillis();
+        Arrays.parallelSort(a);
+        System.out.printf("n=%d  Arrays.parallelSort (%d потоков): %d мс\n",
+                n, ForkJoinPool.getCommonPoolParallelism(), System.currentTimeMillis() - startTime);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(2 * threads, processors)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long best = Long.MAX_VALUE;
+            boolean ok = true;
+            for (int round = 0; round < 3; round++) {
+                a = source.clone();
+                startTime = System.currentTimeMillis();
+                sort(a, pool);
+                best = Math.min(best, System.currentTimeMillis() - startTime);
+                ok &= Arrays.equals(a, expected);
+            }
+            pool.shutdown();
+            System.out.printf("n=%d  слиянием, %d потоков: %d мс, совпадает: %b\n", n, threads, best, ok);
+            if (threads == processors) break;
+        }
+    }
+}
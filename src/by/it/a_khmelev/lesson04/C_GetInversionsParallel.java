@@ -0,0 +1,271 @@
+package by.it.a_khmelev.lesson04;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StreamTokenizer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+Число инверсий C_GetInversions для массивов из 10^7-10^8 элементов.
+
+В убывающем массиве из n элементов n(n-1)/2 инверсий, для n > 65536 это больше int,
+поэтому результат - long.
+
+1) count: сортировка слиянием как в B_MergeSortParallel (один буфер, пинг-понг,
+   вставки на коротких отрезках, половины - задачи ForkJoinPool). Инверсии между
+   половинами считаются при слиянии, и само слияние тоже параллельное:
+   середина v большей части ставится на место бинарным поиском в другой части,
+   после чего пары "левый остаток x правый остаток" либо все являются инверсиями,
+   либо ни одна - их число добавляется сразу произведением, а остальные пары
+   считаются в двух независимых подзадачах.
+2) countFenwick: для значений из 0..maxValue - один проход с деревом Фенвика
+   по значениям: для a[i] добавляется число предыдущих элементов, больших a[i].
+   O(n log maxValue), без сортировки и без буфера размера n.
+*/
+
+public class C_GetInversionsParallel {
+
+    static final int CUTOFF = 32;
+    static final int SEQUENTIAL = 1 << 13;
+    static final int MERGE_SEQUENTIAL = 1 << 13;
+
+    //формат C_GetInversions
+    long calc(InputStream stream) throws IOException {
+        StreamTokenizer tokenizer = new StreamTokenizer(new InputStreamReader(new BufferedInputStream(stream)));
+        tokenizer.nextToken();
+        int n = (int) tokenizer.nval;
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (tokenizer.nextToken() != StreamTokenizer.TT_NUMBER)
+                throw new IllegalArgumentException("в потоке " + i + " чисел вместо " + n);
+            a[i] = (int) tokenizer.nval;
+        }
+        return count(a);
+    }
+
+    static long count(int[] a) {
+        return count(a, ForkJoinPool.commonPool());
+    }
+
+    //исходный массив не меняется
+    static long count(int[] a, ForkJoinPool pool) {
+        int[] work = a.clone();
+        if (work.length <= CUTOFF)
+            return insertionSort(work, 0, work.length);
+        return pool.invoke(new Counter(work, new int[work.length], 0, work.length, false));
+    }
+
+    //сортирует a[lo..hi) (результат в a или в b) и возвращает число инверсий отрезка
+    private static class Counter extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a;
+        private final int[] b;
+        private final int lo;
+        private final int hi;
+        private final boolean intoBuffer;
+
+        Counter(int[] a, int[] b, int lo, int hi, boolean intoBuffer) {
+            this.a = a;
+            this.b = b;
+            this.lo = lo;
+            this.hi = hi;
+            this.intoBuffer = intoBuffer;
+        }
+
+        @Override
+        protected Long compute() {
+            if (hi - lo <= SEQUENTIAL)
+                return sequential(a, b, lo, hi, intoBuffer);
+            int mid = (lo + hi) >>> 1;
+            Counter right = new Counter(a, b, mid, hi, !intoBuffer);
+            right.fork();
+            long result = new Counter(a, b, lo, mid, !intoBuffer).compute() + right.join();
+            int[] src = intoBuffer ? a : b;
+            int[] dst = intoBuffer ? b : a;
+            return result + new Merger(src, lo, mid, mid, hi, dst, lo).compute();
+        }
+    }
+
+    private static long sequential(int[] a, int[] b, int lo, int hi, boolean intoBuffer) {
+        if (hi - lo <= CUTOFF) {
+            long result = insertionSort(a, lo, hi);
+            if (intoBuffer) {
+                System.arraycopy(a, lo, b, lo, hi - lo);
+            }
+            return result;
+        }
+        int mid = (lo + hi) >>> 1;
+        long result = sequential(a, b, lo, mid, !intoBuffer) + sequential(a, b, mid, hi, !intoBuffer);
+        return result + (intoBuffer ? merge(a, lo, mid, mid, hi, b, lo) : merge(b, lo, mid, mid, hi, a, lo));
+    }
+
+    //слияние левой части src[lo1..hi1) и правой src[lo2..hi2) в dst с out;
+    //возвращает число пар (x из левой, y из правой) с x > y
+    private static class Merger extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src;
+        private final int lo1, hi1, lo2, hi2;
+        private final int[] dst;
+        private final int out;
+
+        Merger(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int out) {
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dst = dst;
+            this.out = out;
+        }
+
+        @Override
+        protected Long compute() {
+            int n1 = hi1 - lo1;
+            int n2 = hi2 - lo2;
+            if (n1 + n2 <= MERGE_SEQUENTIAL)
+                return merge(src, lo1, hi1, lo2, hi2, dst, out);
+            Merger left;
+            Merger right;
+            long cross;
+            if (n1 >= n2) {
+                //v = середина левой; правая делится на (< v) и (>= v)
+                int m = (lo1 + hi1) >>> 1;
+                int s = lowerBound(src, lo2, hi2, src[m]);
+                int position = out + (m - lo1) + (s - lo2);
+                dst[position] = src[m];
+                //левые [m..hi1) >= v > правые [lo2..s)
+                cross = (long) (hi1 - m) * (s - lo2);
+                left = new Merger(src, lo1, m, lo2, s, dst, out);
+                right = new Merger(src, m + 1, hi1, s, hi2, dst, position + 1);
+            } else {
+                //w = середина правой; левая делится на (<= w) и (> w)
+                int m = (lo2 + hi2) >>> 1;
+                int t = upperBound(src, lo1, hi1, src[m]);
+                int position = out + (t - lo1) + (m - lo2);
+                dst[position] = src[m];
+                //левые [t..hi1) > w >= правые [lo2..m]
+                cross = (long) (hi1 - t) * (m - lo2 + 1);
+                left = new Merger(src, lo1, t, lo2, m, dst, out);
+                right = new Merger(src, t, hi1, m + 1, hi2, dst, position + 1);
+            }
+            right.fork();
+            return cross + left.compute() + right.join();
+        }
+    }
+
+    private static long merge(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int out) {
+        long result = 0;
+        int i = lo1;
+        int j = lo2;
+        while (i < hi1 && j < hi2) {
+            if (src[j] < src[i]) {
+                result += hi1 - i;
+                dst[out++] = src[j++];
+            } else {
+                dst[out++] = src[i++];
+            }
+        }
+        System.arraycopy(src, i, dst, out, hi1 - i);
+        System.arraycopy(src, j, dst, out + hi1 - i, hi2 - j);
+        return result;
+    }
+
+    private static int lowerBound(int[] a, int lo, int hi, int value) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int upperBound(int[] a, int lo, int hi, int value) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    //каждый сдвиг при вставке - одна инверсия
+    private static long insertionSort(int[] a, int lo, int hi) {
+        long result = 0;
+        for (int i = lo + 1; i < hi; i++) {
+            int value = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > value) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            result += i - 1 - j;
+            a[j + 1] = value;
+        }
+        return result;
+    }
+
+    //значения a - из 0..maxValue
+    static long countFenwick(int[] a, int maxValue) {
+        int[] tree = new int[maxValue + 2];
+        long result = 0;
+        for (int i = 0; i < a.length; i++) {
+            int value = a[i];
+            if (value < 0 || value > maxValue)
+                throw new IllegalArgumentException("a[" + i + "]=" + value + " вне 0.." + maxValue);
+            //сколько из предыдущих i элементов не больше value
+            int notGreater = 0;
+            for (int k = value + 1; k > 0; k -= k & -k) {
+                notGreater += tree[k];
+            }
+            result += i - notGreater;
+            for (int k = value + 1; k < tree.length; k += k & -k) {
+                tree[k]++;
+            }
+        }
+        return result;
+    }
+
+    //замер: случайный и убывающий массивы (размер - аргумент, по умолчанию 10^7), 1..N потоков
+    public static void main(String[] args) throws IOException {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson04/dataC.txt");
+        System.out.println(new C_GetInversionsParallel().calc(stream));
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int maxValue = (1 << 20) - 1;
+        int[] random = new Random(1).ints(n, 0, maxValue + 1).toArray();
+        int[] reversed = new int[n];
+        for (int i = 0; i < n; i++) {
+            reversed[i] = (int) ((long) (n - 1 - i) * maxValue / Math.max(1, n - 1));
+        }
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int[] a : new int[][]{random, reversed}) {
+            long startTime = System.currentTimeMillis();
+            long fenwick = countFenwick(a, maxValue);
+            System.out.printf("n=%d  Фенвик: %d инверсий, %d мс\n", n, fenwick, System.currentTimeMillis() - startTime);
+            long single = 0;
+            for (int threads = 1; ; threads = Math.min(2 * threads, processors)) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                long best = Long.MAX_VALUE;
+                long result = 0;
+                for (int round = 0; round < 3; round++) {
+                    startTime = System.currentTimeMillis();
+                    result = count(a, pool);
+                    best = Math.min(best, System.currentTimeMillis() - startTime);
+                }
+                pool.shutdown();
+                if (threads == 1) single = best;
+                System.out.printf("n=%d  слиянием, %d потоков: %d мс (ускорение %.2f), совпадает: %b\n",
+                        n, threads, best, (double) single / best, result == fenwick);
+                if (threads == processors) break;
+            }
+        }
+    }
+}
@@ -2,9 +2,12 @@ package by.it.a_khmelev.lesson04;
 
 import org.junit.Test;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertTrue;
 
@@ -58,4 +61,131 @@ public class Lesson4Test {
 
     }
 
+    @Test
+    public void A_Eytzinger() throws Exception {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson04/dataA.txt");
+        int[] result = new A_BinaryFindEytzinger(new int[0]).findIndex(stream);
+        boolean ok = Arrays.equals(result, new int[]{3, 1, -1, 1, -1});
+        assertTrue("A_Eytzinger failed", ok);
+
+        //все размеры деревьев до 70 и несколько больших: против обычного бинарного поиска
+        Random random = new Random(1);
+        for (int n : new int[]{0, 1, 2, 3, 7, 8, 15, 16, 17, 31, 33, 50, 63, 64, 65, 70, 1000, 100000}) {
+            int[] a = new int[n];
+            for (int i = 0, value = -50; i < n; i++) {
+                value += 1 + random.nextInt(3);
+                a[i] = value;
+            }
+            int[] queries = new int[50000];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = -60 + random.nextInt(3 * n + 20);
+            }
+            queries[0] = Integer.MIN_VALUE;
+            queries[1] = Integer.MAX_VALUE;
+            A_BinaryFindEytzinger index = new A_BinaryFindEytzinger(a);
+            int[] batch = index.find(queries);
+            for (int i = 0; i < queries.length; i++) {
+                int expected = A_BinaryFindEytzinger.findClassic(a, queries[i]);
+                assertTrue("A_Eytzinger failed n=" + n + " x=" + queries[i],
+                        index.find(queries[i]) == expected && batch[i] == expected);
+            }
+        }
+    }
+
+    @Test
+    public void B_Parallel() throws Exception {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson04/dataB.txt");
+        int[] result = new B_MergeSortParallel().getMergeSort(stream);
+        assertTrue("B_Parallel failed", Arrays.equals(result, new int[]{2, 2, 3, 9, 9}));
+
+        Random random = new Random(2);
+        ForkJoinPool[] pools = {new ForkJoinPool(1), new ForkJoinPool(4)};
+        for (int n : new int[]{0, 1, 2, 31, 32, 33, 1000, 8193, 100000, 1000000}) {
+            for (ForkJoinPool pool : pools) {
+                //мало различных значений и почти отсортированный массив - отдельные случаи слияния
+                int[][] inputs = {random.ints(n).toArray(), random.ints(n, 0, 5).toArray(), new int[n]};
+                for (int i = 0; i < n; i++) inputs[2][i] = i % 1000 == 0 ? -i : i;
+                for (int[] a : inputs) {
+                    int[] expected = a.clone();
+                    Arrays.sort(expected);
+                    B_MergeSortParallel.sort(a, pool);
+                    assertTrue("B_Parallel failed n=" + n, Arrays.equals(a, expected));
+                }
+            }
+        }
+        for (ForkJoinPool pool : pools) pool.shutdown();
+    }
+
+    @Test
+    public void C_Parallel() throws Exception {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson04/dataC.txt");
+        long result = new C_GetInversionsParallel().calc(stream);
+        assertTrue("C_Parallel failed", result == 2);
+
+        //убывающий массив: n(n-1)/2 инверсий, больше int
+        int n = 100000;
+        int[] reversed = new int[n];
+        for (int i = 0; i < n; i++) reversed[i] = n - i;
+        assertTrue("C_Parallel failed reversed", C_GetInversionsParallel.count(reversed) == (long) n * (n - 1) / 2);
+        assertTrue("C_Parallel failed reversed fenwick", C_GetInversionsParallel.countFenwick(reversed, n) == (long) n * (n - 1) / 2);
+
+        Random random = new Random(3);
+        ForkJoinPool[] pools = {new ForkJoinPool(1), new ForkJoinPool(4)};
+        for (int size : new int[]{0, 1, 2, 33, 500, 20000, 300000}) {
+            int[][] inputs = {random.ints(size, 0, 1000000).toArray(), random.ints(size, 0, 4).toArray()};
+            for (int[] a : inputs) {
+                long expected = C_GetInversionsParallel.countFenwick(a, 1000000);
+                if (size <= 500) {
+                    expected = 0;
+                    for (int i = 0; i < size; i++)
+                        for (int j = i + 1; j < size; j++)
+                            if (a[i] > a[j]) expected++;
+                    assertTrue("C_Parallel failed fenwick n=" + size, C_GetInversionsParallel.countFenwick(a, 1000000) == expected);
+                }
+                for (ForkJoinPool pool : pools) {
+                    assertTrue("C_Parallel failed n=" + size, C_GetInversionsParallel.count(a, pool) == expected);
+                }
+            }
+        }
+        for (ForkJoinPool pool : pools) pool.shutdown();
+    }
+
+    @Test
+    public void B_External() throws Exception {
+        File input = File.createTempFile("external", ".in");
+        File output = File.createTempFile("external", ".out");
+        try {
+            Random random = new Random(4);
+            for (int n : new int[]{0, 1, 1000, 300000}) {
+                int[] values = random.ints(n).toArray();
+                if (n > 0) {
+                    values[n / 2] = Integer.MIN_VALUE;
+                }
+                B_MergeSortExternal.save(input, values);
+                //бюджет 256 КБ на 2 потока: отрезки по 12К чисел и слияние в несколько проходов
+                B_MergeSortExternal sorter = new B_MergeSortExternal(256 << 10, 2, null);
+                int runs = sorter.sort(input, output);
+                Arrays.sort(values);
+                assertTrue("B_External failed n=" + n, Arrays.equals(B_MergeSortExternal.load(output), values));
+                assertTrue("B_External failed runs n=" + n, runs == (n + sorter.runLength() - 1) / sorter.runLength());
+            }
+            //результат читается остальными задачами урока
+            int[] sorted = B_MergeSortExternal.load(output);
+            int[] found = new A_BinaryFindEytzinger(sorted).find(new int[]{sorted[0], sorted[12345]});
+            assertTrue("B_External failed find", sorted[found[0] - 1] == sorted[0] && sorted[found[1] - 1] == sorted[12345]);
+            assertTrue("B_External failed inversions", C_GetInversionsParallel.count(sorted) == 0);
+        } finally {
+            input.delete();
+            output.delete();
+        }
+        try {
+            new B_MergeSortExternal(1 << 20, 32, null);
+            assertTrue("B_External failed budget per thread", false);
+        } catch (IllegalArgumentException e) {
+            //меньше MIN_BUFFER на поток - отказ
+        }
+    }
 }
@@ -0,0 +1,212 @@
+package by.it.a_khmelev.lesson05;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StreamTokenizer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/*
+Задача A_QSort для 10^6 отрезков и 10^7 точек.
+
+Обычное решение сортирует объекты Segment и для каждой точки просматривает отрезки,
+это O(n*m) - на таких размерах минуты. Здесь объекты не нужны вовсе:
+начала и концы отрезков сортируются отдельно как int[], и для точки p
+    ответ = (число начал <= p) - (число концов < p),
+потому что каждый отрезок, закончившийся до p, и начался до p.
+1) count: два бинарных поиска на точку, O((n + m) log n).
+2) countSweep: точки сортируются (значение << 32 | номер), затем один проход
+   по началам, концам и точкам вместе; указатели в началах и концах только растут.
+Точки обрабатываются параллельно кусками по CHUNK; в countSweep кусок
+находит свои стартовые позиции указателей бинарным поиском и дальше идет сам.
+*/
+
+public class A_QSortSweep {
+
+    //точек на одну параллельную задачу
+    private static final int CHUNK = 1 << 14;
+
+    private final int[] starts; //начала по возрастанию
+    private final int[] stops;  //концы по возрастанию
+
+    //концы, пришедшие в обратном порядке, переставляются
+    A_QSortSweep(int[] starts, int[] stops) {
+        if (starts.length != stops.length)
+            throw new IllegalArgumentException("начал " + starts.length + ", а концов " + stops.length);
+        this.starts = new int[starts.length];
+        this.stops = new int[stops.length];
+        for (int i = 0; i < starts.length; i++) {
+            this.starts[i] = Math.min(starts[i], stops[i]);
+            this.stops[i] = Math.max(starts[i], stops[i]);
+        }
+        Arrays.parallelSort(this.starts);
+        Arrays.parallelSort(this.stops);
+    }
+
+    //скольким отрезкам принадлежит точка
+    int count(int point) {
+        return upperBound(starts, 0, point) - lowerBound(stops, 0, point);
+    }
+
+    //бинарными поисками, куски точек параллельно
+    int[] count(int[] points) {
+        int[] result = new int[points.length];
+        int chunks = (points.length + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            for (int i = c * CHUNK, to = Math.min(points.length, i + CHUNK); i < to; i++) {
+                result[i] = count(points[i]);
+            }
+        });
+        return result;
+    }
+
+    //одним проходом по отсортированным точкам
+    int[] countSweep(int[] points) {
+        long[] keys = new long[points.length];
+        for (int i = 0; i < points.length; i++) {
+            keys[i] = (long) points[i] << 32 | i;
+        }
+        Arrays.parallelSort(keys);
+        int[] result = new int[points.length];
+        int chunks = (points.length + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int from = c * CHUNK;
+            int to = Math.min(points.length, from + CHUNK);
+            int first = (int) (keys[from] >> 32);
+            int s = upperBound(starts, 0, first);
+            int t = lowerBound(stops, 0, first);
+            for (int i = from; i < to; i++) {
+                int point = (int) (keys[i] >> 32);
+                while (s < starts.length && starts[s] <= point) s++;
+                while (t < stops.length && stops[t] < point) t++;
+                result[(int) keys[i]] = s - t;
+            }
+        });
+        return result;
+    }
+
+    //первая позиция с a[i] >= value
+    private static int lowerBound(int[] a, int lo, int value) {
+        int hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    //первая позиция с a[i] > value
+    private static int upperBound(int[] a, int lo, int value) {
+        int hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    //формат A_QSort
+    int[] getAccessory(InputStream stream) throws IOException {
+        StreamTokenizer tokenizer = new StreamTokenizer(new InputStreamReader(new BufferedInputStream(stream)));
+        int n = nextInt(tokenizer);
+        int m = nextInt(tokenizer);
+        int[] starts = new int[n];
+        int[] stops = new int[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = nextInt(tokenizer);
+            stops[i] = nextInt(tokenizer);
+        }
+        int[] points = new int[m];
+        for (int i = 0; i < m; i++) {
+            points[i] = nextInt(tokenizer);
+        }
+        return new A_QSortSweep(starts, stops).count(points);
+    }
+
+    private static int nextInt(StreamTokenizer tokenizer) throws IOException {
+        if (tokenizer.nextToken() != StreamTokenizer.TT_NUMBER)
+            throw new IllegalArgumentException("ожидалось число в строке " + tokenizer.lineno());
+        return (int) tokenizer.nval;
+    }
+
+    //обычный путь через объекты - для сравнения
+    private static class Segment implements Comparable<Segment> {
+        final int start;
+        final int stop;
+
+        Segment(int start, int stop) {
+            this.start = Math.min(start, stop);
+            this.stop = Math.max(start, stop);
+        }
+
+        @Override
+        public int compareTo(Segment o) {
+            return Integer.compare(start, o.start);
+        }
+    }
+
+    //отрезки по началу, для точки - просмотр до первого начала правее нее
+    static int[] countSegments(int[] starts, int[] stops, int[] points) {
+        Segment[] segments = new Segment[starts.length];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(starts[i], stops[i]);
+        }
+        Arrays.sort(segments);
+        int[] result = new int[points.length];
+        for (int i = 0; i < points.length; i++) {
+            for (int j = 0; j < segments.length && segments[j].start <= points[i]; j++) {
+                if (segments[j].stop >= points[i]) result[i]++;
+            }
+        }
+        return result;
+    }
+
+    //замер: n отрезков (по умолчанию 10^6), m точек (10^7); путь через Segment - на первых 1000 точках
+    public static void main(String[] args) throws IOException {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson05/dataA.txt");
+        for (int index : new A_QSortSweep(new int[0], new int[0]).getAccessory(stream)) {
+            System.out.print(index + " ");
+        }
+        System.out.println();
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int m = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int range = 1_000_000_000;
+        Random random = new Random(1);
+        int[] starts = new int[n];
+        int[] stops = new int[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = random.nextInt(range);
+            stops[i] = starts[i] + random.nextInt(range / 1000);
+        }
+        int[] points = random.ints(m, 0, range).toArray();
+
+        int sample = Math.min(m, 1000);
+        long startTime = System.currentTimeMillis();
+        int[] naive = countSegments(starts, stops, Arrays.copyOf(points, sample));
+        long naiveTime = System.currentTimeMillis() - startTime;
+        System.out.printf("n=%d  Segment: %d точек за %d мс (на все %d точек ~%d с)\n",
+                n, sample, naiveTime, m, naiveTime * m / sample / 1000);
+        for (int round = 0; round < 3; round++) {
+            startTime = System.currentTimeMillis();
+            A_QSortSweep index = new A_QSortSweep(starts, stops);
+            long buildTime = System.currentTimeMillis() - startTime;
+            startTime = System.currentTimeMillis();
+            int[] searched = index.count(points);
+            long searchTime = System.currentTimeMillis() - startTime;
+            startTime = System.currentTimeMillis();
+            int[] swept = index.countSweep(points);
+            long sweepTime = System.currentTimeMillis() - startTime;
+            System.out.printf("n=%d m=%d: сортировка концов %d мс, бинарный поиск %d мс, проход %d мс, совпадает: %b\n",
+                    n, m, buildTime, searchTime, sweepTime,
+                    Arrays.equals(searched, swept) && Arrays.equals(naive, Arrays.copyOf(searched, sample)));
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package by.it.a_khmelev.lesson05;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/*
+Сортировка подсчетом B_CountSort для всех неотрицательных int и long.
+
+1) Если максимум не больше COUNTING_MAX - обычный подсчет: гистограмма значений
+   и заполнение результата по ней.
+2) Иначе поразрядная сортировка LSD: проходы по цифрам из digitBits бит начиная
+   с младших. Ширина цифры по умолчанию подбирается так, чтобы проходов было
+   ceil(бит / 11): гистограмма из 2^11 счетчиков помещается в L1. Ее можно задать
+   явно (8, 11, 16) для сравнения.
+   Каждый проход: массив делится на куски по числу потоков, у каждого куска
+   своя гистограмма цифр (без общих счетчиков и синхронизации), затем префиксные
+   суммы в порядке (цифра, кусок) дают каждому куску его позиции, и куски
+   раскладывают свои элементы параллельно. Порядок равных цифр сохраняется,
+   поэтому проходы можно делать подряд. Проход, в котором у всех элементов
+   одна цифра, пропускается. Массив и буфер меняются ролями после каждого прохода.
+3) histogram: если нужны только количества, числа читаются из потока
+   в гистограмму и массив не создается вовсе.
+*/
+
+public class B_CountSortRadix {
+
+    //до этого максимума - сортировка подсчетом (гистограмма 256 КБ)
+    static final int COUNTING_MAX = (1 << 16) - 1;
+    //наибольшая гистограмма в потоковом режиме
+    static final int HISTOGRAM_MAX = (1 << 24) - 1;
+    //наименьший кусок на поток
+    private static final int MIN_CHUNK = 1 << 16;
+
+    //формат B_CountSort
+    int[] countSort(InputStream stream) throws IOException {
+        Reader reader = new Reader(stream);
+        int n = reader.nextInt();
+        int[] points = new int[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = reader.nextInt();
+        }
+        sort(points);
+        return points;
+    }
+
+    static void sort(int[] a) {
+        sort(a, 0);
+    }
+
+    //digitBits - ширина цифры 1..16, 0 - выбрать самому
+    static void sort(int[] a, int digitBits) {
+        if (digitBits < 0 || digitBits > 16)
+            throw new IllegalArgumentException("цифра " + digitBits + " бит, а нужно 1..16");
+        int max = IntStream.of(a).parallel().reduce(0, (x, y) -> {
+            if ((x | y) < 0)
+                throw new IllegalArgumentException("отрицательное число " + Math.min(x, y));
+            return Math.max(x, y);
+        });
+        if (a.length < 2) return;
+        int tasks = tasks(a.length);
+        if (digitBits == 0 && max <= COUNTING_MAX) {
+            counting(a, max, tasks);
+            return;
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(max);
+        if (digitBits == 0) {
+            int passes = (bits + 10) / 11;
+            digitBits = (bits + passes - 1) / passes;
+        }
+        int[] src = a;
+        int[] dst = new int[a.length];
+        for (int shift = 0; shift < bits; shift += digitBits) {
+            if (pass(src, dst, shift, digitBits, tasks)) {
+                int[] swap = src;
+                src = dst;
+                dst = swap;
+            }
+        }
+        if (src != a) {
+            System.arraycopy(src, 0, a, 0, a.length);
+        }
+    }
+
+    //один проход: src по цифре (v >>> shift) & mask в dst; false - цифра у всех одна, проход не нужен
+    private static boolean pass(int[] src, int[] dst, int shift, int bits, int tasks) {
+        int n = src.length;
+        int mask = (1 << bits) - 1;
+        int[][] counts = new int[tasks][1 << bits];
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            int[] count = counts[t];
+            for (int i = from(n, t, tasks), to = from(n, t + 1, tasks); i < to; i++) {
+                count[(src[i] >>> shift) & mask]++;
+            }
+        });
+        if (!offsets(counts, n)) return false;
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            int[] offset = counts[t];
+            for (int i = from(n, t, tasks), to = from(n, t + 1, tasks); i < to; i++) {
+                int value = src[i];
+                dst[offset[(value >>> shift) & mask]++] = value;
+            }
+        });
+        return true;
+    }
+
+    //гистограммы кусков превращаются в их стартовые позиции; false - все n в одной цифре
+    private static boolean offsets(int[][] counts, int n) {
+        int position = 0;
+        for (int d = 0; d < counts[0].length; d++) {
+            int digitStart = position;
+            for (int[] count : counts) {
+                int c = count[d];
+                count[d] = position;
+                position += c;
+            }
+            if (position - digitStart == n) return false;
+        }
+        return true;
+    }
+
+    private static void counting(int[] a, int max, int tasks) {
+        int n = a.length;
+        int[][] counts = new int[tasks][max + 1];
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            int[] count = counts[t];
+            for (int i = from(n, t, tasks), to = from(n, t + 1, tasks); i < to; i++) {
+                count[a[i]]++;
+            }
+        });
+        fill(a, sum(counts), tasks);
+    }
+
+    static void sort(long[] a) {
+        sort(a, 0);
+    }
+
+    static void sort(long[] a, int digitBits) {
+        if (digitBits < 0 || digitBits > 16)
+            throw new IllegalArgumentException("цифра " + digitBits + " бит, а нужно 1..16");
+        long max = LongStream.of(a).parallel().reduce(0, (x, y) -> {
+            if ((x | y) < 0)
+                throw new IllegalArgumentException("отрицательное число " + Math.min(x, y));
+            return Math.max(x, y);
+        });
+        if (a.length < 2) return;
+        int tasks = tasks(a.length);
+        if (digitBits == 0 && max <= COUNTING_MAX) {
+            counting(a, (int) max, tasks);
+            return;
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(max);
+        if (digitBits == 0) {
+            int passes = (bits + 10) / 11;
+            digitBits = (bits + passes - 1) / passes;
+        }
+        long[] src = a;
+        long[] dst = new long[a.length];
+        for (int shift = 0; shift < bits; shift += digitBits) {
+            if (pass(src, dst, shift, digitBits, tasks)) {
+                long[] swap = src;
+                src = dst;
+                dst = swap;
+            }
+        }
+        if (src != a) {
+            System.arraycopy(src, 0, a, 0, a.length);
+        }
+    }
+
+    private static boolean pass(long[] src, long[] dst, int shift, int bits, int tasks) {
+        int n = src.length;
+        int mask = (1 << bits) - 1;
+        int[][] counts = new int[tasks][1 << bits];
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            int[] count = counts[t];
+            for (int i = from(n, t, tasks), to = from(n, t + 1, tasks); i < to; i++) {
+                count[(int) (src[i] >>> shift) & mask]++;
+            }
+        });
+        if (!offsets(counts, n)) return false;
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            int[] offset = counts[t];
+            for (int i = from(n, t, tasks), to = from(n, t + 1, tasks); i < to; i++) {
+                long value = src[i];
+                dst[offset[(int) (value >>> shift) & mask]++] = value;
+            }
+        });
+        return true;
+    }
+
+    private static void counting(long[] a, int max, int tasks) {
+        int n = a.length;
+        int[][] counts = new int[tasks][max + 1];
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            int[] count = counts[t];
+            for (int i = from(n, t, tasks), to = from(n, t + 1, tasks); i < to; i++) {
+                count[(int) a[i]]++;
+            }
+        });
+        fill(a, sum(counts), tasks);
+    }
+
+    //результат подсчета: значение v повторяется total[v] раз; диапазоны значений заполняются параллельно
+    private static void fill(int[] a, int[] total, int tasks) {
+        int[] start = starts(total);
+        int values = total.length;
+        int step = (values + tasks - 1) / tasks;
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            for (int v = t * step, to = Math.min(values, v + step); v < to; v++) {
+                Arrays.fill(a, start[v], start[v] + total[v], v);
+            }
+        });
+    }
+
+    private static void fill(long[] a, int[] total, int tasks) {
+        int[] start = starts(total);
+        int values = total.length;
+        int step = (values + tasks - 1) / tasks;
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            for (int v = t * step, to = Math.min(values, v + step); v < to; v++) {
+                Arrays.fill(a, start[v], start[v] + total[v], v);
+            }
+        });
+    }
+
+    private static int[] sum(int[][] counts) {
+        int[] total = counts[0];
+        for (int t = 1; t < counts.length; t++) {
+            for (int v = 0; v < total.length; v++) {
+                total[v] += counts[t][v];
+            }
+        }
+        return total;
+    }
+
+    private static int[] starts(int[] total) {
+        int[] start = new int[total.length];
+        for (int v = 1; v < total.length; v++) {
+            start[v] = start[v - 1] + total[v - 1];
+        }
+        return start;
+    }
+
+    //число кусков: по потоку на ядро, но не мельче MIN_CHUNK
+    private static int tasks(int n) {
+        return Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), n / MIN_CHUNK));
+    }
+
+    private static int from(int n, int t, int tasks) {
+        return (int) ((long) n * t / tasks);
+    }
+
+    //потоковый режим: формат B_CountSort, в результате h[v] - сколько раз встретилось v
+    static long[] histogram(InputStream stream) throws IOException {
+        Reader reader = new Reader(stream);
+        int n = reader.nextInt();
+        long[] histogram = new long[16];
+        int max = -1;
+        for (int i = 0; i < n; i++) {
+            int value = reader.nextInt();
+            if (value > HISTOGRAM_MAX)
+                throw new IllegalArgumentException("число " + value + " больше " + HISTOGRAM_MAX + ", нужна sort");
+            if (value >= histogram.length) {
+                histogram = Arrays.copyOf(histogram, Math.max(value + 1, 2 * histogram.length));
+            }
+            histogram[value]++;
+            max = Math.max(max, value);
+        }
+        return Arrays.copyOf(histogram, max + 1);
+    }
+
+    //неотрицательные числа через пробелы и переводы строк
+    private static class Reader {
+        private final InputStream stream;
+        private final byte[] buffer = new byte[1 << 16];
+        private int length;
+        private int position;
+
+        Reader(InputStream stream) {
+            this.stream = new BufferedInputStream(stream, 1 << 16);
+        }
+
+        private int read() throws IOException {
+            if (position == length) {
+                length = stream.read(buffer, 0, buffer.length);
+                position = 0;
+                if (length <= 0) {
+                    length = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        int nextInt() throws IOException {
+            int c = read();
+            while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                c = read();
+            }
+            if (c == '-')
+                throw new IllegalArgumentException("отрицательное число в потоке");
+            if (c < '0' || c > '9')
+                throw new IllegalArgumentException("ожидалось число, а не " + (c < 0 ? "конец потока" : "'" + (char) c + "'"));
+            long value = 0;
+            while (c >= '0' && c <= '9') {
+                value = value * 10 + c - '0';
+                if (value > Integer.MAX_VALUE)
+                    throw new IllegalArgumentException("число больше " + Integer.MAX_VALUE);
+                c = read();
+            }
+            return (int) value;
+        }
+    }
+
+    //замер на n числах (по умолчанию 10^7): int по всему диапазону, малый диапазон, long и поток
+    public static void main(String[] args) throws IOException {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson05/dataB.txt");
+        for (int index : new B_CountSortRadix().countSort(stream)) {
+            System.out.print(index + " ");
+        }
+        System.out.println();
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Random random = new Random(1);
+        int[] wide = random.ints(n, 0, Integer.MAX_VALUE).toArray();
+        int[] narrow = random.ints(n, 0, 1000).toArray();
+        for (int[] source : new int[][]{wide, narrow}) {
+            int[] expected = source.clone();
+            long startTime = System.currentTimeMillis();
+            Arrays.sort(expected);
+            System.out.printf("n=%d  Arrays.sort: %d мс\n", n, System.currentTimeMillis() - startTime);
+            int[] a = source.clone();
+            startTime = System.currentTimeMillis();
+            Arrays.parallelSort(a);
+            System.out.printf("n=%d  Arrays.parallelSort: %d мс\n", n, System.currentTimeMillis() - startTime);
+            for (int digitBits : new int[]{0, 8, 11, 16}) {
+                long best = Long.MAX_VALUE;
+                boolean ok = true;
+                for (int round = 0; round < 3; round++) {
+                    a = source.clone();
+                    startTime = System.currentTimeMillis();
+                    sort(a, digitBits);
+                    best = Math.min(best, System.currentTimeMillis() - startTime);
+                    ok &= Arrays.equals(a, expected);
+                }
+                System.out.printf("n=%d  %s: %d мс, совпадает: %b\n",
+                        n, digitBits == 0 ? "авто" : "цифра " + digitBits + " бит", best, ok);
+            }
+        }
+
+        long[] longs = random.longs(n, 0, Long.MAX_VALUE).toArray();
+        long[] expected = longs.clone();
+        long startTime = System.currentTimeMillis();
+        Arrays.sort(expected);
+        System.out.printf("n=%d  long Arrays.sort: %d мс\n", n, System.currentTimeMillis() - startTime);
+        long[] b = longs.clone();
+        startTime = System.currentTimeMillis();
+        sort(b);
+        System.out.printf("n=%d  long поразрядно: %d мс, совпадает: %b\n",
+                n, System.currentTimeMillis() - startTime, Arrays.equals(b, expected));
+
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        StringBuilder line = new StringBuilder().append(n).append('\n');
+        for (int value : narrow) {
+            line.append(value).append(' ');
+            if (line.length() > 1 << 16) {
+                text.write(line.toString().getBytes(StandardCharsets.US_ASCII));
+                line.setLength(0);
+            }
+        }
+        text.write(line.toString().getBytes(StandardCharsets.US_ASCII));
+        byte[] bytes = text.toByteArray();
+        startTime = System.currentTimeMillis();
+        long[] histogram = histogram(new ByteArrayInputStream(bytes));
+        long histogramTime = System.currentTimeMillis() - startTime;
+        startTime = System.currentTimeMillis();
+        int[] sorted = new B_CountSortRadix().countSort(new ByteArrayInputStream(bytes));
+        System.out.printf("n=%d  поток %d МБ: гистограмма %d мс, чтение и сортировка %d мс, совпадает: %b\n",
+                n, bytes.length >> 20, histogramTime, System.currentTimeMillis() - startTime,
+                histogram[sorted[n / 2]] == Arrays.stream(sorted).filter(v -> v == sorted[n / 2]).count());
+    }
+}
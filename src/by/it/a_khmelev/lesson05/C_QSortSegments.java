@@ -0,0 +1,334 @@
+package by.it.a_khmelev.lesson05;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StreamTokenizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+Сортировка отрезков C_QSortOptimized без объектов Segment.
+
+Отрезок i - пара (start[i], stop[i]) в двух параллельных массивах int, порядок -
+по началу, при равных началах по концу. Сравнения идут по примитивам, обмен
+переставляет ячейки в обоих массивах, разыменований ссылок нет.
+1) 3-разбиение (Дейкстра): [< опорного | == опорному | > опорного]. Равные опорному
+   больше не трогаются, поэтому массив из повторов сортируется за линейное время.
+2) Опорный: медиана трех, а для отрезков длиннее NINTHER - "ниньтер"
+   (медиана трех медиан трех из девяти точек).
+3) Элиминация хвостовой рекурсии: меньшая часть сортируется вызовом, большая - в цикле,
+   поэтому глубина стека не больше log2(n).
+4) Интроспекция: после 2*log2(n) разбиений отрезок досортировывается пирамидой,
+   т.е. O(n log n) даже на подобранных против опорного входах.
+5) Короткие отрезки - вставками; меньшие части длиннее SEQUENTIAL - задачи ForkJoinPool.
+*/
+
+public class C_QSortSegments {
+
+    static final int INSERTION = 24;
+    static final int NINTHER = 128;
+    static final int SEQUENTIAL = 1 << 14;
+
+    static void sort(int[] start, int[] stop) {
+        sort(start, stop, ForkJoinPool.commonPool());
+    }
+
+    static void sort(int[] start, int[] stop, ForkJoinPool pool) {
+        sort(start, stop, pool, 2 * (32 - Integer.numberOfLeadingZeros(start.length)));
+    }
+
+    //depth - сколько разбиений можно сделать до перехода на пирамиду
+    static void sort(int[] start, int[] stop, ForkJoinPool pool, int depth) {
+        if (start.length != stop.length)
+            throw new IllegalArgumentException("начал " + start.length + ", а концов " + stop.length);
+        if (start.length <= SEQUENTIAL) {
+            quickSort(start, stop, 0, start.length, depth, null);
+        } else {
+            pool.invoke(new Sorter(start, stop, 0, start.length, depth));
+        }
+    }
+
+    private static class Sorter extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a;
+        private final int[] b;
+        private final int lo;
+        private final int hi;
+        private final int depth;
+
+        Sorter(int[] a, int[] b, int lo, int hi, int depth) {
+            this.a = a;
+            this.b = b;
+            this.lo = lo;
+            this.hi = hi;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            List<Sorter> forked = new ArrayList<>();
+            quickSort(a, b, lo, hi, depth, forked);
+            for (Sorter task : forked) {
+                task.join();
+            }
+        }
+    }
+
+    //сортирует [lo, hi); forked == null - без параллельных задач
+    private static void quickSort(int[] a, int[] b, int lo, int hi, int depth, List<Sorter> forked) {
+        while (hi - lo > INSERTION) {
+            if (depth-- == 0) {
+                heapSort(a, b, lo, hi);
+                return;
+            }
+            int p = hi - lo > NINTHER ? ninther(a, b, lo, hi) : median(a, b, lo, (lo + hi) >>> 1, hi - 1);
+            int pa = a[p];
+            int pb = b[p];
+            //[lo, lt) < опорного, [lt, i) == опорному, [i, gt) не просмотрены, [gt, hi) > опорного
+            int lt = lo;
+            int i = lo;
+            int gt = hi;
+            while (i < gt) {
+                int ai = a[i];
+                int bi = b[i];
+                if (ai < pa || ai == pa && bi < pb) {
+                    swap(a, b, lt++, i++);
+                } else if (ai > pa || bi > pb) {
+                    swap(a, b, i, --gt);
+                } else {
+                    i++;
+                }
+            }
+            //меньшая часть - отдельно, большая - следующей итерацией
+            if (lt - lo < hi - gt) {
+                sortPart(a, b, lo, lt, depth, forked);
+                lo = gt;
+            } else {
+                sortPart(a, b, gt, hi, depth, forked);
+                hi = lt;
+            }
+        }
+        insertionSort(a, b, lo, hi);
+    }
+
+    private static void sortPart(int[] a, int[] b, int lo, int hi, int depth, List<Sorter> forked) {
+        if (forked != null && hi - lo > SEQUENTIAL) {
+            Sorter task = new Sorter(a, b, lo, hi, depth);
+            task.fork();
+            forked.add(task);
+        } else {
+            quickSort(a, b, lo, hi, depth, null);
+        }
+    }
+
+    private static boolean less(int[] a, int[] b, int i, int j) {
+        return a[i] < a[j] || a[i] == a[j] && b[i] < b[j];
+    }
+
+    //номер медианы из трех ячеек
+    private static int median(int[] a, int[] b, int i, int j, int k) {
+        if (less(a, b, i, j)) {
+            return less(a, b, j, k) ? j : less(a, b, i, k) ? k : i;
+        }
+        return less(a, b, i, k) ? i : less(a, b, j, k) ? k : j;
+    }
+
+    private static int ninther(int[] a, int[] b, int lo, int hi) {
+        int step = (hi - lo) / 8;
+        int mid = (lo + hi) >>> 1;
+        return median(a, b,
+                median(a, b, lo, lo + step, lo + 2 * step),
+                median(a, b, mid - step, mid, mid + step),
+                median(a, b, hi - 1 - 2 * step, hi - 1 - step, hi - 1));
+    }
+
+    private static void swap(int[] a, int[] b, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+        t = b[i];
+        b[i] = b[j];
+        b[j] = t;
+    }
+
+    private static void insertionSort(int[] a, int[] b, int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            int ai = a[i];
+            int bi = b[i];
+            int j = i - 1;
+            while (j >= lo && (a[j] > ai || a[j] == ai && b[j] > bi)) {
+                a[j + 1] = a[j];
+                b[j + 1] = b[j];
+                j--;
+            }
+            a[j + 1] = ai;
+            b[j + 1] = bi;
+        }
+    }
+
+    //пирамидальная сортировка [lo, hi): корень в lo, дети k - 2k+1 и 2k+2 относительно lo
+    private static void heapSort(int[] a, int[] b, int lo, int hi) {
+        int n = hi - lo;
+        for (int k = n / 2 - 1; k >= 0; k--) {
+            siftDown(a, b, lo, k, n);
+        }
+        for (int size = n - 1; size > 0; size--) {
+            swap(a, b, lo, lo + size);
+            siftDown(a, b, lo, 0, size);
+        }
+    }
+
+    private static void siftDown(int[] a, int[] b, int lo, int k, int size) {
+        while (2 * k + 1 < size) {
+            int child = 2 * k + 1;
+            if (child + 1 < size && less(a, b, lo + child, lo + child + 1)) child++;
+            if (!less(a, b, lo + k, lo + child)) return;
+            swap(a, b, lo + k, lo + child);
+            k = child;
+        }
+    }
+
+    //формат C_QSortOptimized: отрезки по началу, для точки бинарным поиском -
+    //последний отрезок с началом <= точки, затем просмотр отрезков левее него
+    int[] getAccessory2(InputStream stream) throws IOException {
+        StreamTokenizer tokenizer = new StreamTokenizer(new InputStreamReader(new BufferedInputStream(stream)));
+        int n = nextInt(tokenizer);
+        int m = nextInt(tokenizer);
+        int[] start = new int[n];
+        int[] stop = new int[n];
+        for (int i = 0; i < n; i++) {
+            int x = nextInt(tokenizer);
+            int y = nextInt(tokenizer);
+            start[i] = Math.min(x, y);
+            stop[i] = Math.max(x, y);
+        }
+        sort(start, stop);
+        int[] result = new int[m];
+        for (int i = 0; i < m; i++) {
+            int point = nextInt(tokenizer);
+            int lo = 0;
+            int hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (start[mid] <= point) lo = mid + 1;
+                else hi = mid;
+            }
+            for (int j = lo - 1; j >= 0; j--) {
+                if (stop[j] >= point) result[i]++;
+            }
+        }
+        return result;
+    }
+
+    private static int nextInt(StreamTokenizer tokenizer) throws IOException {
+        if (tokenizer.nextToken() != StreamTokenizer.TT_NUMBER)
+            throw new IllegalArgumentException("ожидалось число в строке " + tokenizer.lineno());
+        return (int) tokenizer.nval;
+    }
+
+    //объекты для сравнения, как в C_QSortOptimized
+    private static class Segment implements Comparable<Segment> {
+        final int start;
+        final int stop;
+
+        Segment(int start, int stop) {
+            this.start = start;
+            this.stop = stop;
+        }
+
+        @Override
+        public int compareTo(Segment o) {
+            return start != o.start ? Integer.compare(start, o.start) : Integer.compare(stop, o.stop);
+        }
+    }
+
+    //входы: случайный, много повторов, все равны, по возрастанию, по убыванию, "пила"
+    //и убийца медианы трех (Массер); размер - аргумент, по умолчанию 5*10^6
+    public static void main(String[] args) throws IOException {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson05/dataC.txt");
+        for (int index : new C_QSortSegments().getAccessory2(stream)) {
+            System.out.print(index + " ");
+        }
+        System.out.println();
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        Random random = new Random(1);
+        String[] names = {"случайный", "10 значений", "все равны", "возрастает", "убывает", "пила", "убийца медианы"};
+        for (String name : names) {
+            int[] start = new int[n];
+            int[] stop = new int[n];
+            for (int i = 0; i < n; i++) {
+                switch (name) {
+                    case "случайный": start[i] = random.nextInt(); break;
+                    case "10 значений": start[i] = random.nextInt(10); break;
+                    case "все равны": start[i] = 7; break;
+                    case "возрастает": start[i] = i; break;
+                    case "убывает": start[i] = n - i; break;
+                    case "пила": start[i] = i % 1000; break;
+                    default: start[i] = medianKiller(n, i);
+                }
+                stop[i] = name.equals("10 значений") ? start[i] + random.nextInt(10) : start[i] + (i & 7);
+            }
+            //эталон: упакованный ключ (начало, конец со сдвигом знака) и Arrays.sort
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = (long) start[i] << 32 | (stop[i] ^ Integer.MIN_VALUE) & 0xffffffffL;
+            }
+            long startTime = System.currentTimeMillis();
+            Arrays.sort(keys);
+            long keysTime = System.currentTimeMillis() - startTime;
+
+            Segment[] segments = new Segment[n];
+            for (int i = 0; i < n; i++) {
+                segments[i] = new Segment(start[i], stop[i]);
+            }
+            startTime = System.currentTimeMillis();
+            Arrays.sort(segments);
+            long segmentsTime = System.currentTimeMillis() - startTime;
+            segments = null;
+
+            int processors = Runtime.getRuntime().availableProcessors();
+            StringBuilder line = new StringBuilder();
+            boolean ok = true;
+            for (int threads = 1; ; threads = Math.min(2 * threads, processors)) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                long best = Long.MAX_VALUE;
+                for (int round = 0; round < 3; round++) {
+                    int[] a = start.clone();
+                    int[] b = stop.clone();
+                    startTime = System.currentTimeMillis();
+                    sort(a, b, pool);
+                    best = Math.min(best, System.currentTimeMillis() - startTime);
+                    for (int i = 0; i < n; i++) {
+                        ok &= keys[i] == ((long) a[i] << 32 | (b[i] ^ Integer.MIN_VALUE) & 0xffffffffL);
+                    }
+                }
+                pool.shutdown();
+                line.append(String.format(", %d потоков %d мс", threads, best));
+                if (threads == processors) break;
+            }
+            System.out.printf("n=%d %s: Segment[] %d мс, long-ключи %d мс%s, совпадает: %b\n",
+                    n, name, segmentsTime, keysTime, line, ok);
+        }
+    }
+
+    //перестановка 1..n, на которой медиана трех (первый, средний, последний) каждый раз выбирает
+    //почти наименьший элемент (D. Musser, Introspective Sorting and Selection Algorithms)
+    static int medianKiller(int n, int i) {
+        int k = n / 2;
+        if (i < k) {
+            int j = i + 1;
+            return j % 2 == 1 ? j : k + j - 1;
+        }
+        return 2 * (i - k + 1);
+    }
+}
@@ -0,0 +1,233 @@
+package by.it.a_khmelev.lesson05;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/*
+Задача C_QSortOptimized, когда отрезки добавляются и удаляются по ходу дня.
+
+Как и в A_QSortSweep, для точки p
+    покрытие = (число начал <= p) - (число концов < p),
+только начала и концы лежат не в отсортированных массивах, а в двух деревьях
+Фенвика над сжатыми координатами: все возможные концы отрезков (расписание)
+известны заранее, сортируются без повторов, и координата заменяется ее номером.
+addSegment, removeSegment и coverCount - O(log n), точка запроса может быть любой.
+Отрезки хранятся мультимножеством (начало, конец) -> сколько раз, чтобы удалить
+можно было только то, что добавлялось.
+
+snapshot превращает деревья в обычные префиксные суммы (O(n)); снимок не меняется,
+поэтому пакет запросов coverCounts читает его параллельно кусками по CHUNK,
+пока индекс продолжает меняться.
+*/
+
+public class C_SegmentIndex {
+
+    //точек на одну параллельную задачу
+    private static final int CHUNK = 1 << 14;
+
+    private final int[] keys;     //возможные концы отрезков по возрастанию без повторов
+    private final int[] starts;   //дерево Фенвика по началам, с 1
+    private final int[] stops;    //дерево Фенвика по концам, с 1
+    private final Map<Long, Integer> segments = new HashMap<>();
+    private int size;
+
+    //coordinates - все координаты, которые могут быть концами отрезков
+    C_SegmentIndex(int[] coordinates) {
+        int[] sorted = coordinates.clone();
+        Arrays.parallelSort(sorted);
+        int unique = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) sorted[unique++] = sorted[i];
+        }
+        keys = Arrays.copyOf(sorted, unique);
+        starts = new int[unique + 1];
+        stops = new int[unique + 1];
+    }
+
+    synchronized void addSegment(int start, int stop) {
+        int a = Math.min(start, stop);
+        int b = Math.max(start, stop);
+        int i = key(a);
+        int j = key(b);
+        segments.merge(pair(a, b), 1, Integer::sum);
+        add(starts, i, 1);
+        add(stops, j, 1);
+        size++;
+    }
+
+    //false - такого отрезка нет
+    synchronized boolean removeSegment(int start, int stop) {
+        int a = Math.min(start, stop);
+        int b = Math.max(start, stop);
+        Long pair = pair(a, b);
+        Integer count = segments.get(pair);
+        if (count == null) return false;
+        if (count == 1) segments.remove(pair);
+        else segments.put(pair, count - 1);
+        add(starts, key(a), -1);
+        add(stops, key(b), -1);
+        size--;
+        return true;
+    }
+
+    //скольким отрезкам принадлежит точка
+    synchronized int coverCount(int point) {
+        int i = upperBound(keys, point);
+        return prefix(starts, i) - prefix(stops, lowerBound(keys, i, point));
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized Snapshot snapshot() {
+        return new Snapshot(keys, prefixes(starts), prefixes(stops));
+    }
+
+    //пакет запросов по снимку текущего состояния
+    int[] coverCounts(int[] points) {
+        return snapshot().coverCounts(points);
+    }
+
+    //неизменяемое состояние индекса: startsBefore[i] - начал среди первых i координат
+    static class Snapshot {
+        private final int[] keys;
+        private final int[] startsBefore;
+        private final int[] stopsBefore;
+
+        private Snapshot(int[] keys, int[] startsBefore, int[] stopsBefore) {
+            this.keys = keys;
+            this.startsBefore = startsBefore;
+            this.stopsBefore = stopsBefore;
+        }
+
+        int coverCount(int point) {
+            int i = upperBound(keys, point);
+            return startsBefore[i] - stopsBefore[lowerBound(keys, i, point)];
+        }
+
+        int[] coverCounts(int[] points) {
+            int[] result = new int[points.length];
+            int chunks = (points.length + CHUNK - 1) / CHUNK;
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                for (int i = c * CHUNK, to = Math.min(points.length, i + CHUNK); i < to; i++) {
+                    result[i] = coverCount(points[i]);
+                }
+            });
+            return result;
+        }
+    }
+
+    //номер координаты (с 1) в дереве
+    private int key(int coordinate) {
+        int i = Arrays.binarySearch(keys, coordinate);
+        if (i < 0)
+            throw new IllegalArgumentException("координаты " + coordinate + " нет среди возможных концов отрезков");
+        return i + 1;
+    }
+
+    private static Long pair(int a, int b) {
+        return (long) a << 32 | b & 0xffffffffL;
+    }
+
+    private static void add(int[] tree, int i, int delta) {
+        for (; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    //сумма первых count элементов
+    private static int prefix(int[] tree, int count) {
+        int sum = 0;
+        for (int i = count; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    //префиксные суммы из дерева Фенвика за O(n): tree[i] - сумма (i - (i & -i), i]
+    private static int[] prefixes(int[] tree) {
+        int[] result = new int[tree.length];
+        for (int i = 1; i < tree.length; i++) {
+            result[i] = result[i - (i & -i)] + tree[i];
+        }
+        return result;
+    }
+
+    //число ключей < value по уже найденному числу ключей <= value: ключи без повторов,
+    //поэтому они отличаются не больше чем на 1 - второй бинарный поиск не нужен
+    private static int lowerBound(int[] a, int upper, int value) {
+        return upper > 0 && a[upper - 1] == value ? upper - 1 : upper;
+    }
+
+    //число ключей <= value
+    private static int upperBound(int[] a, int value) {
+        int lo = 0;
+        int hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    //замер: расписание из n отрезков (по умолчанию 10^6), все добавляются, половина удаляется,
+    //затем m точек (10^7) по одной, пакетом по снимку и пересборкой A_QSortSweep
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int m = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int range = 1_000_000_000;
+        Random random = new Random(1);
+        int[] start = new int[n];
+        int[] stop = new int[n];
+        int[] coordinates = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            start[i] = random.nextInt(range);
+            stop[i] = start[i] + random.nextInt(range / 1000);
+            coordinates[2 * i] = start[i];
+            coordinates[2 * i + 1] = stop[i];
+        }
+        int[] points = random.ints(m, 0, range).toArray();
+
+        long startTime = System.currentTimeMillis();
+        C_SegmentIndex index = new C_SegmentIndex(coordinates);
+        long buildTime = System.currentTimeMillis() - startTime;
+        startTime = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            index.addSegment(start[i], stop[i]);
+        }
+        for (int i = 0; i < n; i += 2) {
+            index.removeSegment(start[i], stop[i]);
+        }
+        long updateTime = System.currentTimeMillis() - startTime;
+        System.out.printf("n=%d: сжатие координат %d мс, %d изменений %d мс (%.0f нс на изменение)\n",
+                n, buildTime, n + (n + 1) / 2, updateTime, updateTime * 1e6 / (n + (n + 1) / 2));
+
+        int[] left = new int[n / 2];
+        int[] right = new int[n / 2];
+        for (int i = 1, j = 0; i < n; i += 2, j++) {
+            left[j] = start[i];
+            right[j] = stop[i];
+        }
+        for (int round = 0; round < 3; round++) {
+            startTime = System.currentTimeMillis();
+            int[] online = new int[m];
+            for (int i = 0; i < m; i++) {
+                online[i] = index.coverCount(points[i]);
+            }
+            long onlineTime = System.currentTimeMillis() - startTime;
+            startTime = System.currentTimeMillis();
+            int[] batch = index.coverCounts(points);
+            long batchTime = System.currentTimeMillis() - startTime;
+            startTime = System.currentTimeMillis();
+            int[] rebuilt = new A_QSortSweep(left, right).count(points);
+            long rebuildTime = System.currentTimeMillis() - startTime;
+            System.out.printf("m=%d: по одной %d мс, пакетом по снимку %d мс, пересборка A_QSortSweep %d мс, совпадает: %b\n",
+                    m, onlineTime, batchTime, rebuildTime, Arrays.equals(online, batch) && Arrays.equals(online, rebuilt));
+        }
+    }
+}
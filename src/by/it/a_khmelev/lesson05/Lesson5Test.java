@@ -2,9 +2,14 @@ package by.it.a_khmelev.lesson05;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertTrue;
 
@@ -41,4 +46,162 @@ public class Lesson5Test {
         assertTrue("C failed", ok);
     }
 
+    @Test
+    public void A_Sweep() throws Exception {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson05/dataA.txt");
+        int[] result = new A_QSortSweep(new int[0], new int[0]).getAccessory(stream);
+        assertTrue("A_Sweep failed", Arrays.equals(result, new int[]{1, 0, 0}));
+
+        Random random = new Random(5);
+        for (int n : new int[]{0, 1, 10, 1000}) {
+            int[] starts = random.ints(n, -50, 50).toArray();
+            int[] stops = random.ints(n, -50, 50).toArray(); //часть отрезков задана наоборот
+            int[] points = random.ints(40000, -60, 60).toArray();
+            int[] expected = new int[points.length];
+            for (int i = 0; i < points.length; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (Math.min(starts[j], stops[j]) <= points[i] && points[i] <= Math.max(starts[j], stops[j]))
+                        expected[i]++;
+                }
+            }
+            A_QSortSweep index = new A_QSortSweep(starts, stops);
+            assertTrue("A_Sweep failed search n=" + n, Arrays.equals(index.count(points), expected));
+            assertTrue("A_Sweep failed sweep n=" + n, Arrays.equals(index.countSweep(points), expected));
+            assertTrue("A_Sweep failed segments n=" + n,
+                    Arrays.equals(A_QSortSweep.countSegments(starts, stops, points), expected));
+        }
+    }
+
+    @Test
+    public void B_Radix() throws Exception {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson05/dataB.txt");
+        int[] result = new B_CountSortRadix().countSort(stream);
+        assertTrue("B_Radix failed", Arrays.equals(result, new int[]{2, 2, 3, 9, 9}));
+        stream = new FileInputStream(root + "by/it/a_khmelev/lesson05/dataB.txt");
+        assertTrue("B_Radix failed histogram",
+                Arrays.equals(B_CountSortRadix.histogram(stream), new long[]{0, 0, 2, 1, 0, 0, 0, 0, 0, 2}));
+
+        Random random = new Random(6);
+        //подсчет, поразрядная с разной шириной цифры, пропуск одинаковых цифр и несколько кусков
+        for (int n : new int[]{0, 1, 1000, 300000}) {
+            for (int bound : new int[]{1, 11, 1 << 16, 1 << 20, Integer.MAX_VALUE}) {
+                int[] a = random.ints(n, 0, bound).toArray();
+                long[] b = random.longs(n, 0, bound == Integer.MAX_VALUE ? Long.MAX_VALUE : bound).toArray();
+                for (int digitBits : new int[]{0, 8, 11, 16}) {
+                    int[] actual = a.clone();
+                    B_CountSortRadix.sort(actual, digitBits);
+                    long[] actualLong = b.clone();
+                    B_CountSortRadix.sort(actualLong, digitBits);
+                    int[] expected = a.clone();
+                    Arrays.sort(expected);
+                    long[] expectedLong = b.clone();
+                    Arrays.sort(expectedLong);
+                    assertTrue("B_Radix failed n=" + n + " bound=" + bound + " bits=" + digitBits,
+                            Arrays.equals(actual, expected) && Arrays.equals(actualLong, expectedLong));
+                }
+            }
+        }
+        int[] high = {1 << 30, 5 << 20, 1 << 30, 3};
+        B_CountSortRadix.sort(high);
+        assertTrue("B_Radix failed high", Arrays.equals(high, new int[]{3, 5 << 20, 1 << 30, 1 << 30}));
+        try {
+            B_CountSortRadix.sort(new int[]{1, -1});
+            assertTrue("B_Radix failed negative", false);
+        } catch (IllegalArgumentException e) {
+            //отрицательные числа не поддерживаются
+        }
+        try {
+            new B_CountSortRadix().countSort(new ByteArrayInputStream("2\n1 \u00e9".getBytes("UTF-8")));
+            assertTrue("B_Radix failed non-ASCII", false);
+        } catch (IllegalArgumentException e) {
+            //байт >= 0x80 - чужой символ, а не конец потока
+            assertTrue("B_Radix failed non-ASCII message", !e.getMessage().contains("конец"));
+        }
+    }
+
+    @Test
+    public void C_Segments() throws Exception {
+        String root = System.getProperty("user.dir") + "/src/";
+        InputStream stream = new FileInputStream(root + "by/it/a_khmelev/lesson05/dataC.txt");
+        int[] result = new C_QSortSegments().getAccessory2(stream);
+        assertTrue("C_Segments failed", Arrays.equals(result, new int[]{1, 0, 0}));
+
+        Random random = new Random(7);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int n : new int[]{0, 1, 2, 25, 1000, 100000}) {
+            for (int kind = 0; kind < 4; kind++) {
+                int[] start = new int[n];
+                int[] stop = new int[n];
+                for (int i = 0; i < n; i++) {
+                    start[i] = kind == 0 ? random.nextInt() : kind == 1 ? random.nextInt(3)
+                            : kind == 2 ? C_QSortSegments.medianKiller(n, i) : n - i;
+                    stop[i] = kind == 0 ? random.nextInt() : random.nextInt(3);
+                }
+                long[] expected = new long[n];
+                for (int i = 0; i < n; i++) {
+                    expected[i] = (long) start[i] << 32 | (stop[i] ^ Integer.MIN_VALUE) & 0xffffffffL;
+                }
+                Arrays.sort(expected);
+                //обычная глубина, сразу пирамида и переход на пирамиду в середине
+                for (int depth : new int[]{-1, 0, 3}) {
+                    int[] a = start.clone();
+                    int[] b = stop.clone();
+                    if (depth < 0) C_QSortSegments.sort(a, b, pool);
+                    else C_QSortSegments.sort(a, b, pool, depth);
+                    long[] actual = new long[n];
+                    for (int i = 0; i < n; i++) {
+                        actual[i] = (long) a[i] << 32 | (b[i] ^ Integer.MIN_VALUE) & 0xffffffffL;
+                    }
+                    assertTrue("C_Segments failed n=" + n + " kind=" + kind + " depth=" + depth,
+                            Arrays.equals(actual, expected));
+                }
+            }
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void C_Index() throws Exception {
+        Random random = new Random(8);
+        int[] coordinates = random.ints(200, -100, 100).toArray();
+        C_SegmentIndex index = new C_SegmentIndex(coordinates);
+        List<int[]> alive = new ArrayList<>();
+        int[] points = random.ints(50000, -110, 110).toArray();
+        C_SegmentIndex.Snapshot before = index.snapshot();
+        for (int step = 0; step < 2000; step++) {
+            if (alive.isEmpty() || random.nextInt(3) > 0) {
+                int[] segment = {coordinates[random.nextInt(200)], coordinates[random.nextInt(200)]};
+                index.addSegment(segment[0], segment[1]);
+                alive.add(segment);
+            } else {
+                int[] segment = alive.remove(random.nextInt(alive.size()));
+                assertTrue("C_Index failed remove", index.removeSegment(segment[1], segment[0]));
+            }
+            if (step % 100 == 0) {
+                int[] expected = new int[points.length];
+                for (int i = 0; i < points.length; i++) {
+                    for (int[] segment : alive) {
+                        if (Math.min(segment[0], segment[1]) <= points[i] && points[i] <= Math.max(segment[0], segment[1]))
+                            expected[i]++;
+                    }
+                }
+                for (int i = 0; i < 200; i++) {
+                    assertTrue("C_Index failed online", index.coverCount(points[i]) == expected[i]);
+                }
+                assertTrue("C_Index failed batch step=" + step, Arrays.equals(index.coverCounts(points), expected));
+                assertTrue("C_Index failed size", index.size() == alive.size());
+            }
+        }
+        //снимок не видит последующих изменений
+        assertTrue("C_Index failed snapshot", Arrays.equals(before.coverCounts(points), new int[points.length]));
+        assertTrue("C_Index failed absent", !index.removeSegment(1000, 1001));
+        try {
+            index.addSegment(1000, 1001);
+            assertTrue("C_Index failed unknown coordinate", false);
+        } catch (IllegalArgumentException e) {
+            //концы отрезков - только из заданных координат
+        }
+    }
 }